@@ -0,0 +1,48 @@
+package io.leego.trie.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.util.Arrays;
+
+/**
+ * Runs the benchmarks with the GC profiler and writes the results to a JSON file,
+ * which is kept as the baseline of a version and compared with the results of the next one.
+ * <pre>
+ * mvn -P benchmark test-compile exec:exec -Djmh.main=io.leego.trie.benchmark.BaselineRunner -Djmh.args="target/baseline.json SearchBenchmark"
+ * </pre>
+ * The first argument is the output file, {@code target/jmh-baseline.json} by default,
+ * the others are the usual JMH arguments, all the benchmarks are run if none is included.
+ *
+ * @author Leego Yih
+ */
+public final class BaselineRunner {
+    private static final String DEFAULT_OUTPUT = "target/jmh-baseline.json";
+
+    private BaselineRunner() {
+    }
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        String output = args.length > 0 ? args[0] : DEFAULT_OUTPUT;
+        File parent = new File(output).getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IllegalArgumentException("Cannot create " + parent);
+        }
+        CommandLineOptions cmd = new CommandLineOptions(args.length > 1 ? Arrays.copyOfRange(args, 1, args.length) : new String[0]);
+        OptionsBuilder options = new OptionsBuilder();
+        options.parent(cmd)
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .result(output);
+        if (cmd.getIncludes().isEmpty()) {
+            options.include(BaselineRunner.class.getPackage().getName() + ".*");
+        }
+        new Runner(options.build()).run();
+    }
+}
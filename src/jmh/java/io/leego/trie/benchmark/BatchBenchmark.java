@@ -0,0 +1,89 @@
+package io.leego.trie.benchmark;
+
+import io.leego.trie.BatchEmits;
+import io.leego.trie.CompiledTrie;
+import io.leego.trie.Trie;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares a loop over {@code findAll} with the batch search of many short documents.
+ *
+ * @author Leego Yih
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BatchBenchmark {
+    @Param({"10000"})
+    public int dictionarySize;
+    @Param({"100000"})
+    public int documents;
+    @Param({"64"})
+    public int documentLength;
+    private CompiledTrie compiled;
+    private List<String> texts;
+    private ExecutorService executor;
+
+    @Setup
+    public void setup() {
+        Set<String> dictionary = Dictionaries.words(dictionarySize, 4, 8, 42);
+        compiled = new Trie(dictionary).compile();
+        List<String> words = new ArrayList<>(dictionary);
+        Random random = new Random(7);
+        texts = new ArrayList<>(documents);
+        for (int i = 0; i < documents; i++) {
+            StringBuilder sb = new StringBuilder(documentLength + 16);
+            while (sb.length() < documentLength) {
+                sb.append(random.nextInt(8) == 0 ? words.get(random.nextInt(words.size())) : Dictionaries.word(random, 6));
+                sb.append(' ');
+            }
+            texts.add(sb.substring(0, documentLength));
+        }
+        executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    @Benchmark
+    public void findAllLoop(Blackhole blackhole) {
+        for (String text : texts) {
+            blackhole.consume(compiled.findAll(text));
+        }
+    }
+
+    @Benchmark
+    public BatchEmits findAllBatch() {
+        return compiled.findAll(texts);
+    }
+
+    @Benchmark
+    public BatchEmits findAllBatchExecutor() {
+        return compiled.findAll(texts, false, executor);
+    }
+}
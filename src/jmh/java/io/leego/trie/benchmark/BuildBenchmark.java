@@ -0,0 +1,71 @@
+package io.leego.trie.benchmark;
+
+import io.leego.trie.CompiledTrie;
+import io.leego.trie.Trie;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the sequential build with the parallel build, and measures the compilation.
+ * Pass {@code -p dictionarySize=10000000} for the largest dictionary.
+ *
+ * @author Leego Yih
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class BuildBenchmark {
+    @Param({"latin", "cjk"})
+    public String script;
+    @Param({"1000", "100000", "1000000"})
+    public int dictionarySize;
+    @Param({"1", "4", "16"})
+    public int threads;
+    private Set<String> dictionary;
+    private ForkJoinPool pool;
+    private Trie<?> trie;
+
+    @Setup
+    public void setup() {
+        dictionary = Dictionaries.words(script, dictionarySize, 42);
+        pool = new ForkJoinPool(threads);
+        trie = new Trie<>(dictionary);
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public Trie<?> sequential() {
+        return new Trie<>(dictionary);
+    }
+
+    @Benchmark
+    public Trie<?> parallel() {
+        return new Trie<>().addKeywords(dictionary, pool);
+    }
+
+    @Benchmark
+    public CompiledTrie compile() {
+        return trie.compile();
+    }
+}
@@ -0,0 +1,115 @@
+package io.leego.trie.benchmark;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Generates reproducible dictionaries for the benchmarks.
+ *
+ * @author Leego Yih
+ */
+public final class Dictionaries {
+    public static final String LATIN = "abcdefghijklmnopqrstuvwxyz";
+    /** The first 3000 CJK unified ideographs, standing in for the common Chinese characters. */
+    public static final String CJK = range('\u4E00', 3000);
+
+    private Dictionaries() {
+    }
+
+    /**
+     * Returns the given number of distinct random words.
+     *
+     * @param size      the number of words
+     * @param minLength the minimum length of a word
+     * @param maxLength the maximum length of a word
+     * @param seed      the seed of the random
+     */
+    public static Set<String> words(int size, int minLength, int maxLength, long seed) {
+        return words(size, minLength, maxLength, LATIN, seed);
+    }
+
+    /**
+     * Returns the given number of distinct random words over the alphabet.
+     *
+     * @param size      the number of words
+     * @param minLength the minimum length of a word
+     * @param maxLength the maximum length of a word
+     * @param alphabet  the chars of the words
+     * @param seed      the seed of the random
+     */
+    public static Set<String> words(int size, int minLength, int maxLength, String alphabet, long seed) {
+        Random random = new Random(seed);
+        Set<String> words = new LinkedHashSet<>(size * 2);
+        while (words.size() < size) {
+            words.add(word(random, minLength + random.nextInt(maxLength - minLength + 1), alphabet));
+        }
+        return words;
+    }
+
+    /**
+     * Returns the given number of distinct random words of the script,
+     * Latin words are 4 to 12 chars long and CJK words are 2 to 4 chars long.
+     *
+     * @param script either {@code latin} or {@code cjk}
+     * @param size   the number of words
+     * @param seed   the seed of the random
+     */
+    public static Set<String> words(String script, int size, long seed) {
+        return "cjk".equals(script)
+                ? words(size, 2, 4, CJK, seed)
+                : words(size, 4, 12, LATIN, seed);
+    }
+
+    public static String alphabet(String script) {
+        return "cjk".equals(script) ? CJK : LATIN;
+    }
+
+    public static String word(Random random, int length) {
+        return word(random, length, LATIN);
+    }
+
+    public static String word(Random random, int length, String alphabet) {
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = alphabet.charAt(random.nextInt(alphabet.length()));
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Returns a text of random words separated by spaces, about the given fraction of its chars
+     * are covered by the words of the dictionary, the rest are random words which rarely match.
+     *
+     * @param words    the dictionary
+     * @param length   the length of the text
+     * @param density  the fraction of the chars covered by the dictionary words, from {@code 0} to {@code 1}
+     * @param alphabet the chars of the random words
+     * @param seed     the seed of the random
+     */
+    public static String text(List<String> words, int length, double density, String alphabet, long seed) {
+        Random random = new Random(seed);
+        StringBuilder sb = new StringBuilder(length + 16);
+        int hits = 0;
+        while (sb.length() < length) {
+            if (hits < density * sb.length() || sb.length() == 0 && density > 0) {
+                String word = words.get(random.nextInt(words.size()));
+                hits += word.length();
+                sb.append(word);
+            } else {
+                sb.append(word(random, 2 + random.nextInt(6), alphabet));
+            }
+            sb.append(' ');
+        }
+        return sb.substring(0, length);
+    }
+
+    private static String range(char first, int count) {
+        char[] chars = new char[count];
+        for (int i = 0; i < count; i++) {
+            chars[i] = (char) (first + i);
+        }
+        return new String(chars);
+    }
+}
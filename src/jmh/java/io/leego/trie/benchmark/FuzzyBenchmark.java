@@ -0,0 +1,70 @@
+package io.leego.trie.benchmark;
+
+import io.leego.trie.Emits;
+import io.leego.trie.Trie;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link Trie#findAllFuzzy(CharSequence, int)} by the maximum distance and the dictionary size,
+ * {@link #exact()} is the exact search of the same text for comparison. One char in ten of the text
+ * is replaced by a random one, so most of the keywords in it are misspelled.
+ *
+ * @author Leego Yih
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class FuzzyBenchmark {
+    @Param({"latin", "cjk"})
+    public String script;
+    @Param({"1000", "100000"})
+    public int dictionarySize;
+    @Param({"1", "2"})
+    public int maxDistance;
+    @Param({"1024"})
+    public int textLength;
+    private Trie<?> trie;
+    private String text;
+
+    @Setup
+    public void setup() {
+        Set<String> dictionary = Dictionaries.words(script, dictionarySize, 42);
+        trie = new Trie<>(dictionary);
+        String alphabet = Dictionaries.alphabet(script);
+        char[] chars = Dictionaries.text(new ArrayList<>(dictionary), textLength, 0.5, alphabet, 7).toCharArray();
+        Random random = new Random(11);
+        for (int i = 0; i < chars.length; i += 10) {
+            chars[i] = alphabet.charAt(random.nextInt(alphabet.length()));
+        }
+        text = new String(chars);
+    }
+
+    @Benchmark
+    public Emits fuzzy() {
+        return trie.findAllFuzzy(text, maxDistance);
+    }
+
+    @Benchmark
+    public Emits exact() {
+        return trie.findAll(text);
+    }
+}
@@ -0,0 +1,61 @@
+package io.leego.trie.benchmark;
+
+import io.leego.trie.Trie;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures adding a batch of keywords to a built trie and removing it again.
+ * The cost should follow the batch size rather than the dictionary size.
+ *
+ * @author Leego Yih
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class IncrementalBenchmark {
+    @Param({"10000", "100000", "1000000"})
+    public int dictionarySize;
+    @Param({"10", "100", "1000"})
+    public int batchSize;
+    private Trie trie;
+    private Set<String> batch;
+
+    @Setup
+    public void setup() {
+        Set<String> words = Dictionaries.words(dictionarySize + batchSize, 4, 12, 42);
+        Set<String> dictionary = new HashSet<>(dictionarySize * 2);
+        batch = new HashSet<>(batchSize * 2);
+        Iterator<String> iterator = words.iterator();
+        for (int i = 0; i < dictionarySize; i++) {
+            dictionary.add(iterator.next());
+        }
+        while (iterator.hasNext()) {
+            batch.add(iterator.next());
+        }
+        trie = new Trie(dictionary);
+    }
+
+    @Benchmark
+    public Trie addAndRemove() {
+        trie.addKeywords(batch);
+        return trie.removeKeywords(batch);
+    }
+}
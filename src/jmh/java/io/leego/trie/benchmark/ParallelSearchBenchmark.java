@@ -0,0 +1,77 @@
+package io.leego.trie.benchmark;
+
+import io.leego.trie.CompiledTrie;
+import io.leego.trie.Emits;
+import io.leego.trie.Trie;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how the chunked parallel search scales with the number of threads.
+ *
+ * @author Leego Yih
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ParallelSearchBenchmark {
+    @Param({"10000"})
+    public int dictionarySize;
+    @Param({"100000000"})
+    public int textLength;
+    @Param({"1", "2", "4", "8", "16"})
+    public int threads;
+    private CompiledTrie compiled;
+    private String text;
+    private ForkJoinPool pool;
+
+    @Setup
+    public void setup() {
+        Set<String> dictionary = Dictionaries.words(dictionarySize, 4, 12, 42);
+        compiled = new Trie(dictionary).compile();
+        List<String> words = new ArrayList<>(dictionary);
+        Random random = new Random(7);
+        StringBuilder sb = new StringBuilder(textLength + 16);
+        while (sb.length() < textLength) {
+            sb.append(random.nextInt(16) == 0 ? words.get(random.nextInt(words.size())) : Dictionaries.word(random, 8));
+            sb.append(' ');
+        }
+        text = sb.substring(0, textLength);
+        pool = new ForkJoinPool(threads);
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public Emits findAll() {
+        return compiled.findAll(text);
+    }
+
+    @Benchmark
+    public Emits findAllParallel() {
+        return compiled.findAllParallel(text, pool);
+    }
+}
@@ -0,0 +1,78 @@
+package io.leego.trie.benchmark;
+
+import io.leego.trie.Emits;
+import io.leego.trie.Token;
+import io.leego.trie.Trie;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the post-processing of the {@link Emits}. The emits are found once, {@code removeOverlaps}
+ * changes them in place, so it works on a fresh copy and {@link #copy()} is the cost to subtract.
+ *
+ * @author Leego Yih
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PostProcessBenchmark {
+    @Param({"latin", "cjk"})
+    public String script;
+    @Param({"100000"})
+    public int dictionarySize;
+    @Param({"65536"})
+    public int textLength;
+    @Param({"0.01", "0.2", "0.8"})
+    public double density;
+    private String text;
+    private Emits emits;
+
+    @Setup
+    public void setup() {
+        Set<String> dictionary = Dictionaries.words(script, dictionarySize, 42);
+        List<String> words = new ArrayList<>(dictionary);
+        text = Dictionaries.text(words, textLength, density, Dictionaries.alphabet(script), 7);
+        emits = new Trie<>(dictionary).findAll(text);
+    }
+
+    @Benchmark
+    public List<Token> tokenize() {
+        return emits.tokenize();
+    }
+
+    @Benchmark
+    public String replaceWith() {
+        return emits.replaceWith("*");
+    }
+
+    @Benchmark
+    public Emits copy() {
+        Emits copy = new Emits(text);
+        copy.addAll(emits);
+        return copy;
+    }
+
+    @Benchmark
+    public Emits removeOverlaps() {
+        Emits copy = copy();
+        copy.removeOverlaps();
+        return copy;
+    }
+}
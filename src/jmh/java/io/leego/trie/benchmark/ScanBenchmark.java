@@ -0,0 +1,82 @@
+package io.leego.trie.benchmark;
+
+import io.leego.trie.CompiledTrie;
+import io.leego.trie.Emits;
+import io.leego.trie.MatchHandler;
+import io.leego.trie.Trie;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@code findAll} with the allocation-free {@code scan},
+ * run with {@code -prof gc} to see the allocation rate per operation.
+ *
+ * @author Leego Yih
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ScanBenchmark {
+    @Param({"10000"})
+    public int dictionarySize;
+    @Param({"4096"})
+    public int textLength;
+    private Trie trie;
+    private CompiledTrie compiled;
+    private String text;
+
+    @Setup
+    public void setup() {
+        Set<String> dictionary = Dictionaries.words(dictionarySize, 4, 8, 42);
+        trie = new Trie(dictionary);
+        compiled = trie.compile();
+        List<String> words = new ArrayList<>(dictionary);
+        Random random = new Random(7);
+        StringBuilder sb = new StringBuilder(textLength);
+        while (sb.length() < textLength) {
+            sb.append(random.nextInt(4) == 0 ? words.get(random.nextInt(words.size())) : Dictionaries.word(random, 6));
+            sb.append(' ');
+        }
+        text = sb.substring(0, textLength);
+    }
+
+    @Benchmark
+    public Emits trieFindAll() {
+        return trie.findAll(text);
+    }
+
+    @Benchmark
+    public Emits compiledFindAll() {
+        return compiled.findAll(text);
+    }
+
+    @Benchmark
+    public void compiledScan(Blackhole blackhole) {
+        compiled.scan(text, new MatchHandler() {
+            @Override
+            public boolean onMatch(int begin, int end, int keywordId) {
+                blackhole.consume(keywordId);
+                return true;
+            }
+        });
+    }
+}
@@ -0,0 +1,108 @@
+package io.leego.trie.benchmark;
+
+import io.leego.trie.CompileOptions;
+import io.leego.trie.CompiledTrie;
+import io.leego.trie.Emit;
+import io.leego.trie.Emits;
+import io.leego.trie.Trie;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the search throughput of {@link Trie} and {@link CompiledTrie} over generated dictionaries
+ * and texts, with and without ignoring case. The text is upper-cased for the ignore-case searches,
+ * so every hit goes through the case folding. Pass {@code -p dictionarySize=10000000} for the largest
+ * dictionary, which needs a larger heap. The deterministic trie falls back to the failures once its
+ * transition table exceeds the default cap, which happens with the larger dictionaries. The unfiltered
+ * trie disables the first-char prefilter, which pays off with the sparse texts over a large alphabet.
+ *
+ * @author Leego Yih
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class SearchBenchmark {
+    @Param({"latin", "cjk"})
+    public String script;
+    @Param({"1000", "100000", "1000000"})
+    public int dictionarySize;
+    @Param({"1024", "65536"})
+    public int textLength;
+    @Param({"0.01", "0.2"})
+    public double density;
+    private Trie<?> trie;
+    private CompiledTrie compiled;
+    private CompiledTrie deterministic;
+    private CompiledTrie unfiltered;
+    private String text;
+    private String upperText;
+
+    @Setup
+    public void setup() {
+        Set<String> dictionary = Dictionaries.words(script, dictionarySize, 42);
+        trie = new Trie<>(dictionary);
+        compiled = trie.compile();
+        deterministic = trie.compile(new CompileOptions().withDeterministic(true));
+        unfiltered = trie.compile(new CompileOptions().withPrefilter(false));
+        List<String> words = new ArrayList<>(dictionary);
+        text = Dictionaries.text(words, textLength, density, Dictionaries.alphabet(script), 7);
+        upperText = text.toUpperCase();
+    }
+
+    @Benchmark
+    public Emits trieFindAll() {
+        return trie.findAll(text);
+    }
+
+    @Benchmark
+    public Emits trieFindAllIgnoreCase() {
+        return trie.findAllIgnoreCase(upperText);
+    }
+
+    @Benchmark
+    public Emit trieFindFirst() {
+        return trie.findFirst(text);
+    }
+
+    @Benchmark
+    public Emits compiledFindAll() {
+        return compiled.findAll(text);
+    }
+
+    @Benchmark
+    public Emits compiledFindAllIgnoreCase() {
+        return compiled.findAllIgnoreCase(upperText);
+    }
+
+    @Benchmark
+    public Emits deterministicFindAll() {
+        return deterministic.findAll(text);
+    }
+
+    @Benchmark
+    public Emits unfilteredFindAll() {
+        return unfiltered.findAll(text);
+    }
+
+    @Benchmark
+    public Emit compiledFindFirst() {
+        return compiled.findFirst(text);
+    }
+}
@@ -0,0 +1,62 @@
+package io.leego.trie;
+
+import java.io.Serializable;
+
+/**
+ * Maps the chars of the keywords to dense indices from {@code 1}, so that the states with many transitions
+ * can be indexed directly. The chars are numbered in the order they are added, and the index table is
+ * split into pages of 256 chars which are allocated on demand.
+ *
+ * @author Leego Yih
+ */
+final class Alphabet implements Serializable {
+    private static final long serialVersionUID = -2215739462807155041L;
+    private final int[][] pages = new int[256][];
+    /** The chars indexed by their indices, the first one is unused. */
+    private char[] chars = new char[16];
+    private int size;
+
+    /**
+     * Returns the index of the char, {@code 0} if absent.
+     */
+    int indexOf(char c) {
+        int[] page = pages[c >>> 8];
+        return page != null ? page[c & 0xFF] : 0;
+    }
+
+    /**
+     * Returns the index of the char, which is added if absent.
+     */
+    int add(char c) {
+        int[] page = pages[c >>> 8];
+        if (page == null) {
+            page = pages[c >>> 8] = new int[256];
+        }
+        int index = page[c & 0xFF];
+        if (index == 0) {
+            index = ++size;
+            if (index >= chars.length) {
+                char[] newChars = new char[Math.min(chars.length << 1, Character.MAX_VALUE + 2)];
+                System.arraycopy(chars, 0, newChars, 0, chars.length);
+                chars = newChars;
+            }
+            chars[index] = c;
+            page[c & 0xFF] = index;
+        }
+        return index;
+    }
+
+    /**
+     * Returns the char with the given index.
+     */
+    char charAt(int index) {
+        return chars[index];
+    }
+
+    /**
+     * Returns the number of chars.
+     */
+    int size() {
+        return size;
+    }
+}
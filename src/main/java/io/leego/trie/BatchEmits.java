@@ -0,0 +1,99 @@
+package io.leego.trie;
+
+/**
+ * The matches found in a batch of documents, stored column by column in primitive arrays.
+ * The matches are grouped by document in ascending order, and the matches of each document
+ * are in the same order as {@link CompiledTrie#findAll(CharSequence, boolean)}.
+ *
+ * @author Leego Yih
+ * @see CompiledTrie#findAll(java.util.List, boolean)
+ */
+public class BatchEmits {
+    /** The index of the first match of each document, followed by the number of matches. */
+    private final int[] offsets;
+    private final int[] documents;
+    private final int[] begins;
+    private final int[] ends;
+    private final int[] keywordIds;
+    private final String[] keywords;
+    private final Object[] payloads;
+
+    BatchEmits(int[] offsets, int[] documents, int[] begins, int[] ends, int[] keywordIds,
+               String[] keywords, Object[] payloads) {
+        this.offsets = offsets;
+        this.documents = documents;
+        this.begins = begins;
+        this.ends = ends;
+        this.keywordIds = keywordIds;
+        this.keywords = keywords;
+        this.payloads = payloads;
+    }
+
+    /**
+     * Returns the number of matches.
+     */
+    public int size() {
+        return begins.length;
+    }
+
+    public boolean isEmpty() {
+        return begins.length == 0;
+    }
+
+    /**
+     * Returns the number of documents.
+     */
+    public int getDocumentCount() {
+        return offsets.length - 1;
+    }
+
+    /**
+     * Returns the index of the first match of the document, the matches of the document
+     * are from this index to {@code getOffset(document + 1)} exclusive.
+     *
+     * @param document the index of the document, from {@code 0} to {@link #getDocumentCount()} inclusive
+     */
+    public int getOffset(int document) {
+        return offsets[document];
+    }
+
+    /**
+     * Returns the number of matches in the document.
+     */
+    public int count(int document) {
+        return offsets[document + 1] - offsets[document];
+    }
+
+    public int getDocument(int index) {
+        return documents[index];
+    }
+
+    public int getBegin(int index) {
+        return begins[index];
+    }
+
+    public int getEnd(int index) {
+        return ends[index];
+    }
+
+    public int getKeywordId(int index) {
+        return keywordIds[index];
+    }
+
+    public String getKeyword(int index) {
+        return keywords[keywordIds[index]];
+    }
+
+    @SuppressWarnings("unchecked")
+    public <V> V getPayload(int index) {
+        return (V) payloads[keywordIds[index]];
+    }
+
+    /**
+     * Returns the match at the given index as an {@link Emit}.
+     */
+    public Emit get(int index) {
+        int id = keywordIds[index];
+        return new Emit(begins[index], ends[index], keywords[id], id, payloads[id]);
+    }
+}
@@ -0,0 +1,80 @@
+package io.leego.trie;
+
+import java.io.Serializable;
+import java.text.Normalizer;
+
+/**
+ * Maps each code point of the keywords and of the text to a normalized code point, so that the keywords
+ * match regardless of case, width or accents. A normalizer is applied once to the keywords when they are added,
+ * and to the text through a lookup table precomputed from it, so the scan costs the same as an exact scan.
+ * <p>
+ * The normalization is one to one and preserves the length, so the offsets of the matches are the offsets
+ * in the original text. A code point is left unchanged if it is mapped to a code point of a different
+ * {@link Character#charCount(int) char count}, or, for a supplementary code point, to one with a different
+ * high surrogate. As a consequence, mappings which change the length such as {@code "ß" -> "ss"} are not supported.
+ *
+ * @author Leego Yih
+ * @see Trie#withNormalizer(CharNormalizer)
+ */
+@FunctionalInterface
+public interface CharNormalizer extends Serializable {
+    /**
+     * Returns the normalized code point.
+     *
+     * @param codePoint the code point
+     * @return the normalized code point
+     */
+    int normalize(int codePoint);
+
+    /**
+     * Returns a normalizer which applies this normalizer and then the given one.
+     */
+    default CharNormalizer andThen(CharNormalizer after) {
+        return codePoint -> after.normalize(normalize(codePoint));
+    }
+
+    /**
+     * Returns a normalizer which folds the case with the simple case mappings of {@link Character},
+     * including the supplementary code points. For example, {@code 'K'}, {@code 'k'} and the Kelvin sign
+     * {@code 'K'} are all mapped to {@code 'k'}, the dotted {@code 'İ'} and the dotless {@code 'ı'} to {@code 'i'}.
+     */
+    static CharNormalizer caseFold() {
+        return codePoint -> Character.toLowerCase(Character.toUpperCase(codePoint));
+    }
+
+    /**
+     * Returns a normalizer which maps the full-width ASCII variants ({@code U+FF01} to {@code U+FF5E})
+     * and the ideographic space to their half-width forms.
+     */
+    static CharNormalizer fullWidthToHalfWidth() {
+        return codePoint -> {
+            if (codePoint >= 0xFF01 && codePoint <= 0xFF5E) {
+                return codePoint - 0xFEE0;
+            }
+            return codePoint == 0x3000 ? ' ' : codePoint;
+        };
+    }
+
+    /**
+     * Returns a normalizer which strips the accents of the code points in the Basic Multilingual Plane,
+     * a code point is mapped to the base of its canonical decomposition if the rest are non-spacing marks.
+     * For example, {@code 'é'} is mapped to {@code 'e'}.
+     */
+    static CharNormalizer stripAccents() {
+        return codePoint -> {
+            if (codePoint < 0xC0 || codePoint > Character.MAX_VALUE) {
+                return codePoint;
+            }
+            String decomposed = Normalizer.normalize(String.valueOf((char) codePoint), Normalizer.Form.NFD);
+            if (decomposed.length() < 2) {
+                return codePoint;
+            }
+            for (int i = 1; i < decomposed.length(); i++) {
+                if (Character.getType(decomposed.charAt(i)) != Character.NON_SPACING_MARK) {
+                    return codePoint;
+                }
+            }
+            return decomposed.charAt(0);
+        };
+    }
+}
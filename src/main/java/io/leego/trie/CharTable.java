@@ -0,0 +1,109 @@
+package io.leego.trie;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * The lookup table precomputed from a {@link CharNormalizer}. A char of the Basic Multilingual Plane
+ * is normalized with a single array read. The normalization of a supplementary code point keeps
+ * the high surrogate, so only the low surrogate changes, and it depends on the previous char.
+ *
+ * @author Leego Yih
+ */
+final class CharTable implements Serializable {
+    private static final long serialVersionUID = 5012483350812648112L;
+    private final CharNormalizer normalizer;
+    /** The normalized char of each char, the surrogates are mapped to themselves. */
+    private final transient char[] chars;
+    /** The supplementary code points which are changed by the normalizer, in ascending order. */
+    private final transient int[] codePoints;
+    /** The normalized low surrogate of each code point in {@link #codePoints}. */
+    private final transient char[] lows;
+
+    CharTable(CharNormalizer normalizer) {
+        this.normalizer = normalizer;
+        this.chars = new char[Character.MAX_VALUE + 1];
+        for (int c = 0; c <= Character.MAX_VALUE; c++) {
+            int n = Character.isSurrogate((char) c) ? c : normalizer.normalize(c);
+            chars[c] = n >= 0 && n <= Character.MAX_VALUE && !Character.isSurrogate((char) n) ? (char) n : (char) c;
+        }
+        IntList codePoints = new IntList(16);
+        StringBuilder lows = new StringBuilder();
+        for (int cp = Character.MIN_SUPPLEMENTARY_CODE_POINT; cp <= Character.MAX_CODE_POINT; cp++) {
+            int n = normalizer.normalize(cp);
+            if (n != cp && Character.isSupplementaryCodePoint(n)
+                    && Character.highSurrogate(n) == Character.highSurrogate(cp)) {
+                codePoints.add(cp);
+                lows.append(Character.lowSurrogate(n));
+            }
+        }
+        this.codePoints = codePoints.toArray();
+        this.lows = lows.toString().toCharArray();
+    }
+
+    CharNormalizer getNormalizer() {
+        return normalizer;
+    }
+
+    /**
+     * Returns whether any supplementary code point is changed.
+     */
+    boolean hasSupplementary() {
+        return codePoints.length > 0;
+    }
+
+    /**
+     * Returns the supplementary code points which are changed by the normalizer, in ascending order.
+     */
+    int[] getCodePoints() {
+        return codePoints;
+    }
+
+    /**
+     * Returns the normalized low surrogate of each code point of {@link #getCodePoints()}.
+     */
+    char[] getLows() {
+        return lows;
+    }
+
+    /**
+     * Normalizes a char of the Basic Multilingual Plane, a surrogate is returned as is.
+     */
+    char normalize(char c) {
+        return chars[c];
+    }
+
+    /**
+     * Normalizes the char at the given index of the text.
+     */
+    char normalize(CharSequence text, int index) {
+        char c = text.charAt(index);
+        if (codePoints.length > 0 && Character.isLowSurrogate(c) && index > 0) {
+            return normalizeLow(text.charAt(index - 1), c);
+        }
+        return chars[c];
+    }
+
+    /**
+     * Normalizes a low surrogate, given the char before it.
+     */
+    char normalizeLow(char high, char low) {
+        if (!Character.isHighSurrogate(high)) {
+            return low;
+        }
+        int i = Arrays.binarySearch(codePoints, Character.toCodePoint(high, low));
+        return i >= 0 ? lows[i] : low;
+    }
+
+    String normalize(String s) {
+        char[] normalized = new char[s.length()];
+        for (int i = 0; i < normalized.length; i++) {
+            normalized[i] = normalize(s, i);
+        }
+        return new String(normalized);
+    }
+
+    private Object readResolve() {
+        return new CharTable(normalizer);
+    }
+}
@@ -0,0 +1,22 @@
+package io.leego.trie;
+
+/**
+ * Receives the matches found by {@link CodePointTrie} with both the char offsets and the code point offsets.
+ *
+ * @author Leego Yih
+ * @see CodePointTrie#scan(CharSequence, CodePointMatchHandler)
+ */
+@FunctionalInterface
+public interface CodePointMatchHandler {
+    /**
+     * Handles a match.
+     *
+     * @param begin          the beginning char offset, inclusive
+     * @param end            the ending char offset, exclusive
+     * @param codePointBegin the beginning offset in code points, inclusive
+     * @param codePointEnd   the ending offset in code points, exclusive
+     * @param keywordId      the id of the keyword, see {@link CodePointTrie#getKeyword(int)}
+     * @return {@code true} to continue the scan, {@code false} to stop it
+     */
+    boolean onMatch(int begin, int end, int codePointBegin, int codePointEnd, int keywordId);
+}
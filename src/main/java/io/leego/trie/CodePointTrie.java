@@ -0,0 +1,435 @@
+package io.leego.trie;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An immutable Aho-Corasick automaton which steps over whole code points rather than UTF-16 chars,
+ * so the keywords of the supplementary planes, such as emoji and CJK Extension B characters, are one
+ * transition per character, and the case of the supplementary letters is ignored as well.
+ * <p>
+ * The code points of the keywords are remapped to a compact alphabet, numbered by descending frequency,
+ * and packed into a double-array like {@link CompiledTrie}. The code of a code point is found in a table
+ * of 256-entry pages which are only allocated where the keywords have code points, so the size of the
+ * automaton depends on the keywords rather than on the range of Unicode. The normalizer of the trie is
+ * applied to whole code points, both to the keywords and to the text.
+ * <p>
+ * The matches are reported with the char offsets, and with the code point offsets as well through a
+ * {@link CodePointMatchHandler}. The keyword ids are the same as those of {@link CompiledTrie}.
+ *
+ * @author Leego Yih
+ * @see Trie#compileCodePoints()
+ */
+public class CodePointTrie implements Serializable {
+    private static final long serialVersionUID = 6410327815543268150L;
+    private static final int ROOT = DoubleArrayBuilder.ROOT;
+    private static final int PAGE_SHIFT = 8;
+    private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+    private final int[] base;
+    private final int[] check;
+    private final int[] fail;
+    /** The offset of the output list of each slot in {@link #outputs}, {@code -1} if none. */
+    private final int[] output;
+    /** The output lists, each one is the number of keywords followed by the keyword ids. */
+    private final int[] outputs;
+    /** The code of each code point, by page, {@code null} for the pages without any code. */
+    private final int[][] codes;
+    /** The code of the opposite case of each code point, by page. */
+    private final int[][] foldCodes;
+    /** The number of distinct code points of the keywords. */
+    private final int alphabetSize;
+    /** The keywords indexed by keyword id, {@code null} for the ids not in use. */
+    private final String[] keywords;
+    private final Object[] payloads;
+    /** The number of code points of each keyword. */
+    private final int[] codePointLengths;
+    /** The number of code points of the longest keyword. */
+    private final int maxLength;
+    /** The number of keywords. */
+    private final int size;
+
+    CodePointTrie(State root, CharNormalizer normalizer, Object[] payloads) {
+        List<State> states = new ArrayList<>();
+        states.add(root);
+        int maxId = -1;
+        for (int i = 0; i < states.size(); i++) {
+            State state = states.get(i);
+            if (state.hasKeyword()) {
+                maxId = Math.max(maxId, state.getId());
+            }
+            state.forEachSuccess((c, next) -> states.add(next));
+        }
+        this.keywords = new String[maxId + 1];
+        int n = 0;
+        for (State state : states) {
+            if (state.hasKeyword()) {
+                keywords[state.getId()] = state.getKeyword();
+                n++;
+            }
+        }
+        states.clear();
+        this.size = n;
+        this.payloads = Arrays.copyOf(payloads, keywords.length);
+        this.codePointLengths = new int[keywords.length];
+
+        // Counts the normalized code points of the keywords.
+        int[][] points = new int[keywords.length][];
+        int[][] frequencies = new int[pageCount()][];
+        int maxLength = 0;
+        for (int i = 0; i < keywords.length; i++) {
+            if (keywords[i] == null) {
+                continue;
+            }
+            int[] cps = keywords[i].codePoints().toArray();
+            for (int j = 0; j < cps.length; j++) {
+                if (normalizer != null) {
+                    cps[j] = normalizer.normalize(cps[j]);
+                }
+                set(frequencies, cps[j], get(frequencies, cps[j]) + 1);
+            }
+            points[i] = cps;
+            codePointLengths[i] = cps.length;
+            maxLength = Math.max(maxLength, cps.length);
+        }
+        this.maxLength = maxLength;
+        int[][] labels = buildLabels(frequencies);
+        this.alphabetSize = count(labels);
+        this.codes = normalizer != null ? compose(labels, normalizer) : labels;
+        this.foldCodes = buildFoldCodes(codes);
+
+        // Replaces the code points of the keywords with their labels, and sorts the keywords by the labels.
+        Integer[] order = new Integer[n];
+        for (int i = 0, j = 0; i < keywords.length; i++) {
+            if (keywords[i] != null) {
+                for (int k = 0; k < points[i].length; k++) {
+                    points[i][k] = get(labels, points[i][k]);
+                }
+                order[j++] = i;
+            }
+        }
+        Arrays.sort(order, (a, b) -> compare(points[a], points[b]));
+
+        // Each node is a range of the sorted keywords sharing a prefix of the node depth, the keywords ending
+        // at the node come first in the range. Several keywords of the trie can end at the same node,
+        // if the normalizer maps their code points to the same ones.
+        DoubleArrayBuilder builder = new DoubleArrayBuilder(n * 2);
+        int[] fail = new int[16];
+        int[] output = new int[16];
+        Arrays.fill(output, -1);
+        IntList outputs = new IntList(n * 2);
+        IntList queue = new IntList(64);
+        queue.add(ROOT);
+        queue.add(0);
+        queue.add(n);
+        queue.add(0);
+        int[] children = new int[alphabetSize];
+        int[] groups = new int[alphabetSize + 1];
+        for (int head = 0; head < queue.size(); head += 4) {
+            int slot = queue.get(head);
+            int lo = queue.get(head + 1);
+            int hi = queue.get(head + 2);
+            int depth = queue.get(head + 3);
+            while (lo < hi && points[order[lo]].length == depth) {
+                lo++;
+            }
+            if (lo == hi) {
+                continue;
+            }
+            int count = 0;
+            for (int i = lo; i < hi; i++) {
+                int label = points[order[i]][depth];
+                if (count == 0 || children[count - 1] != label) {
+                    children[count] = label;
+                    groups[count] = i;
+                    count++;
+                }
+            }
+            groups[count] = hi;
+            int b = builder.insert(slot, children, count);
+            int f = fail[slot];
+            for (int i = 0; i < count; i++) {
+                int child = b + children[i];
+                if (child >= fail.length) {
+                    int newLength = Math.max(child + 1, fail.length + (fail.length >> 1));
+                    int oldLength = output.length;
+                    fail = Arrays.copyOf(fail, newLength);
+                    output = Arrays.copyOf(output, newLength);
+                    Arrays.fill(output, oldLength, newLength, -1);
+                }
+                int childFail = slot != ROOT ? builder.failure(fail, f, children[i]) : ROOT;
+                fail[child] = childFail;
+                int terminal = groups[i];
+                while (terminal < groups[i + 1] && points[order[terminal]].length == depth + 1) {
+                    terminal++;
+                }
+                int o = output[childFail];
+                for (int t = terminal - 1; t >= groups[i]; t--) {
+                    o = DoubleArrayBuilder.addOutput(outputs, order[t], o);
+                }
+                output[child] = o;
+                queue.add(child);
+                queue.add(groups[i]);
+                queue.add(groups[i + 1]);
+                queue.add(depth + 1);
+            }
+        }
+        this.base = builder.base(alphabetSize);
+        this.check = builder.check(alphabetSize);
+        this.fail = Arrays.copyOf(fail, check.length);
+        this.output = Arrays.copyOf(output, check.length);
+        if (output.length < check.length) {
+            Arrays.fill(this.output, output.length, check.length, -1);
+        }
+        this.outputs = outputs.toArray();
+    }
+
+    /**
+     * Scans the text one code point at a time and passes every match to the handler with both the char offsets
+     * and the code point offsets. An unpaired surrogate is a code point of its own.
+     *
+     * @param text       the text
+     * @param ignoreCase whether to ignore the case of the letters, including the supplementary ones
+     * @param handler    the handler
+     * @return {@code true} if the whole text has been scanned, {@code false} if the handler stopped the scan
+     */
+    public boolean scan(CharSequence text, boolean ignoreCase, CodePointMatchHandler handler) {
+        // The char offsets of the last code points, since the normalized text may differ in length.
+        PositionRing ring = new PositionRing(maxLength);
+        int state = ROOT;
+        int codePoints = 0;
+        for (int i = 0, len = text.length(); i < len; ) {
+            int cp = Character.codePointAt(text, i);
+            ring.add(i);
+            i += Character.charCount(cp);
+            codePoints++;
+            state = nextState(state, cp, ignoreCase);
+            int o = output[state];
+            if (o < 0) {
+                continue;
+            }
+            for (int j = o + 1, end = o + outputs[o]; j <= end; j++) {
+                int id = outputs[j];
+                int length = codePointLengths[id];
+                if (!handler.onMatch(ring.get(length - 1), i, codePoints - length, codePoints, id)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    public boolean scan(CharSequence text, CodePointMatchHandler handler) {
+        return scan(text, false, handler);
+    }
+
+    /**
+     * Finds all the keywords in the text, the emits report the char offsets.
+     *
+     * @see #scan(CharSequence, boolean, CodePointMatchHandler)
+     */
+    public Emits findAll(CharSequence text, boolean ignoreCase) {
+        Emits emits = new Emits(text);
+        scan(text, ignoreCase, (begin, end, codePointBegin, codePointEnd, id) ->
+                emits.add(new Emit(begin, end, keywords[id], id, payloads[id])));
+        return emits;
+    }
+
+    public Emits findAll(CharSequence text) {
+        return findAll(text, false);
+    }
+
+    public Emits findAllIgnoreCase(CharSequence text) {
+        return findAll(text, true);
+    }
+
+    /**
+     * Finds the first keyword ending in the text.
+     *
+     * @return the first emit, {@code null} if none
+     */
+    public Emit findFirst(CharSequence text, boolean ignoreCase) {
+        Emit[] first = new Emit[1];
+        scan(text, ignoreCase, (begin, end, codePointBegin, codePointEnd, id) -> {
+            first[0] = new Emit(begin, end, keywords[id], id, payloads[id]);
+            return false;
+        });
+        return first[0];
+    }
+
+    public Emit findFirst(CharSequence text) {
+        return findFirst(text, false);
+    }
+
+    public Emit findFirstIgnoreCase(CharSequence text) {
+        return findFirst(text, true);
+    }
+
+    /**
+     * Returns the keyword with the given id.
+     *
+     * @param id the id of the keyword, from {@code 0} to {@link #getMaxId()} inclusive
+     * @return the keyword, {@code null} if the id is not in use
+     */
+    public String getKeyword(int id) {
+        return keywords[id];
+    }
+
+    /**
+     * Returns the payload of the keyword with the given id.
+     *
+     * @param id the id of the keyword, from {@code 0} to {@link #getMaxId()} inclusive
+     * @return the payload, {@code null} if none
+     */
+    @SuppressWarnings("unchecked")
+    public <V> V getPayload(int id) {
+        return (V) payloads[id];
+    }
+
+    /**
+     * Returns the largest keyword id, {@code -1} if there is no keyword.
+     */
+    public int getMaxId() {
+        return keywords.length - 1;
+    }
+
+    /**
+     * Returns the number of keywords.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of distinct code points of the keywords, which is the number of labels.
+     */
+    public int getAlphabetSize() {
+        return alphabetSize;
+    }
+
+    private int nextState(int state, int cp, boolean ignoreCase) {
+        int code = get(codes, cp);
+        int fold = ignoreCase ? get(foldCodes, cp) : 0;
+        if (code == 0 && fold == 0) {
+            return ROOT;
+        }
+        for (; ; ) {
+            int b = base[state];
+            if (code != 0 && check[b + code] == state) {
+                return b + code;
+            }
+            if (fold != 0 && check[b + fold] == state) {
+                return b + fold;
+            }
+            if (state == ROOT) {
+                return ROOT;
+            }
+            state = fail[state];
+        }
+    }
+
+    /**
+     * Assigns the labels by descending frequency, so the most common code points are packed densely.
+     */
+    private static int[][] buildLabels(int[][] frequencies) {
+        IntList alphabet = new IntList(64);
+        for (int p = 0; p < frequencies.length; p++) {
+            if (frequencies[p] != null) {
+                for (int k = 0; k < PAGE_SIZE; k++) {
+                    if (frequencies[p][k] > 0) {
+                        alphabet.add(p << PAGE_SHIFT | k);
+                    }
+                }
+            }
+        }
+        Integer[] sorted = new Integer[alphabet.size()];
+        for (int i = 0; i < sorted.length; i++) {
+            sorted[i] = alphabet.get(i);
+        }
+        Arrays.sort(sorted, (a, b) -> Integer.compare(get(frequencies, b), get(frequencies, a)));
+        int[][] labels = new int[pageCount()][];
+        for (int i = 0; i < sorted.length; i++) {
+            set(labels, sorted[i], i + 1);
+        }
+        return labels;
+    }
+
+    /**
+     * Maps each code point to the label of its normalized code point.
+     */
+    private static int[][] compose(int[][] labels, CharNormalizer normalizer) {
+        int[][] codes = new int[pageCount()][];
+        for (int cp = 0; cp <= Character.MAX_CODE_POINT; cp++) {
+            int code = get(labels, normalizer.normalize(cp));
+            if (code != 0) {
+                set(codes, cp, code);
+            }
+        }
+        return codes;
+    }
+
+    /**
+     * Maps each code point to the code of its opposite case, with the simple case mappings of the code points.
+     */
+    private static int[][] buildFoldCodes(int[][] codes) {
+        int[][] foldCodes = new int[pageCount()][];
+        for (int cp = 0; cp <= Character.MAX_CODE_POINT; cp++) {
+            int swapped;
+            if (Character.isLowerCase(cp)) {
+                swapped = Character.toUpperCase(cp);
+            } else if (Character.isUpperCase(cp)) {
+                swapped = Character.toLowerCase(cp);
+            } else {
+                continue;
+            }
+            int code = swapped != cp ? get(codes, swapped) : 0;
+            if (code != 0) {
+                set(foldCodes, cp, code);
+            }
+        }
+        return foldCodes;
+    }
+
+    private static int count(int[][] pages) {
+        int count = 0;
+        for (int[] page : pages) {
+            if (page != null) {
+                for (int value : page) {
+                    if (value != 0) {
+                        count++;
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    private static int pageCount() {
+        return (Character.MAX_CODE_POINT >> PAGE_SHIFT) + 1;
+    }
+
+    private static int get(int[][] pages, int cp) {
+        int[] page = pages[cp >>> PAGE_SHIFT];
+        return page != null ? page[cp & (PAGE_SIZE - 1)] : 0;
+    }
+
+    private static void set(int[][] pages, int cp, int value) {
+        int[] page = pages[cp >>> PAGE_SHIFT];
+        if (page == null) {
+            page = pages[cp >>> PAGE_SHIFT] = new int[PAGE_SIZE];
+        }
+        page[cp & (PAGE_SIZE - 1)] = value;
+    }
+
+    private static int compare(int[] a, int[] b) {
+        int len = Math.min(a.length, b.length);
+        for (int i = 0; i < len; i++) {
+            int c = Integer.compare(a[i], b[i]);
+            if (c != 0) {
+                return c;
+            }
+        }
+        return a.length - b.length;
+    }
+}
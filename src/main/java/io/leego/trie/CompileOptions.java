@@ -0,0 +1,80 @@
+package io.leego.trie;
+
+import java.io.Serializable;
+
+/**
+ * The options of {@link Trie#compile(CompileOptions)}.
+ *
+ * @author Leego Yih
+ */
+public class CompileOptions implements Serializable {
+    private static final long serialVersionUID = 4950812766382650177L;
+    /** The default memory cap of the transition table, 64 MiB. */
+    public static final long DEFAULT_MAX_DFA_BYTES = 64L << 20;
+    private boolean deterministic;
+    private long maxDfaBytes = DEFAULT_MAX_DFA_BYTES;
+    private boolean prefilter = true;
+
+    public CompileOptions() {
+    }
+
+    private CompileOptions(CompileOptions options) {
+        this.deterministic = options.deterministic;
+        this.maxDfaBytes = options.maxDfaBytes;
+        this.prefilter = options.prefilter;
+    }
+
+    /**
+     * Sets whether to resolve every transition at compile time, so that each char is a single lookup
+     * in a table of {@code states × alphabet} instead of a walk along the failures. The table is only
+     * used by the case-sensitive searches, set a {@link CharNormalizer#caseFold()} to ignore case with it.
+     *
+     * @param deterministic whether to build the transition table
+     * @return this
+     */
+    public CompileOptions withDeterministic(boolean deterministic) {
+        this.deterministic = deterministic;
+        return this;
+    }
+
+    /**
+     * Sets the memory cap of the transition table, the table is not built if it would be larger,
+     * and the failures are followed instead.
+     *
+     * @param maxDfaBytes the maximum number of bytes
+     * @return this
+     */
+    public CompileOptions withMaxDfaBytes(long maxDfaBytes) {
+        this.maxDfaBytes = maxDfaBytes;
+        return this;
+    }
+
+    /**
+     * Sets whether to skip the chars which cannot begin a match while the automaton is at the root,
+     * they are found through a bitset of the first chars of the keywords. It pays off when most of
+     * the text does not match, and is enabled by default.
+     *
+     * @param prefilter whether to skip the chars which cannot begin a match
+     * @return this
+     */
+    public CompileOptions withPrefilter(boolean prefilter) {
+        this.prefilter = prefilter;
+        return this;
+    }
+
+    public boolean isDeterministic() {
+        return deterministic;
+    }
+
+    public long getMaxDfaBytes() {
+        return maxDfaBytes;
+    }
+
+    public boolean isPrefilter() {
+        return prefilter;
+    }
+
+    CompileOptions copy() {
+        return new CompileOptions(this);
+    }
+}
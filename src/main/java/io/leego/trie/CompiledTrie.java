@@ -0,0 +1,1400 @@
+package io.leego.trie;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * An immutable Aho-Corasick automaton compiled from a {@link Trie}.
+ * The transitions are packed into a double-array ({@code base}/{@code check}),
+ * so each step is a few {@code int[]} reads instead of a search through the transitions of a {@link State}.
+ * It returns exactly the same {@link Emits} as the {@link Trie} it was compiled from.
+ *
+ * @author Leego Yih
+ * @see Trie#compile()
+ */
+public class CompiledTrie implements Serializable {
+    private static final long serialVersionUID = 2316582934411327265L;
+    private static final int ROOT = DoubleArrayBuilder.ROOT;
+    private static final int BUFFER_SIZE = 8192;
+    private static final int MIN_CHUNK_SIZE = 1 << 16;
+    private static final int BATCH_SIZE = 4096;
+    private static final int MAX_DFA_ENTRIES = Integer.MAX_VALUE - 8;
+    /** Maps a char to its alphabet code, {@code 0} if the char is not in the alphabet. */
+    private final int[] codes;
+    /** Maps a char to the alphabet code of its opposite case, {@code 0} if absent. */
+    private final int[] foldCodes;
+    private final int[] base;
+    private final int[] check;
+    private final int[] fail;
+    /** The offset of the output list of each slot in {@link #outputs}, {@code -1} if none. */
+    private final int[] output;
+    /** The output lists, each one is the number of keywords followed by the keyword ids. */
+    private final int[] outputs;
+    /** The keywords indexed by keyword id, {@code null} for the ids not in use. */
+    private final String[] keywords;
+    /** The payloads indexed by keyword id. */
+    private final Object[] payloads;
+    /** The number of keywords. */
+    private final int size;
+    /** The length of the longest keyword. */
+    private final int maxLength;
+    /** The table which normalizes the low surrogates, {@code null} if no supplementary code point is normalized. */
+    private final CharTable surrogates;
+    private final CompileOptions options;
+    /** The number of entries of each row of {@link #dfa}, which is the alphabet size plus one. */
+    private final int stride;
+    /**
+     * The next slot of each slot and code at {@code slot * stride + code}, the failures are resolved,
+     * {@code null} unless the deterministic mode is enabled and the table fits in the memory cap.
+     */
+    private final int[] dfa;
+    /** The bitsets of the chars with a transition from the root, {@code null} if the prefilter is disabled. */
+    private final long[] firsts;
+    /** The bitsets of the chars with a transition from the root when ignoring case. */
+    private final long[] foldFirsts;
+
+    CompiledTrie(State root, CharTable table, Object[] payloads, CompileOptions options, CompiledTrie previous) {
+        // Collects the alphabet and the keywords.
+        int[] frequencies = new int[Character.MAX_VALUE + 1];
+        List<State> states = new ArrayList<>();
+        states.add(root);
+        int maxId = -1;
+        int maxLength = 0;
+        for (int i = 0; i < states.size(); i++) {
+            State state = states.get(i);
+            if (state.hasKeyword()) {
+                maxId = Math.max(maxId, state.getId());
+                maxLength = Math.max(maxLength, state.getDepth());
+            }
+            state.forEachSuccess((c, next) -> {
+                frequencies[c]++;
+                states.add(next);
+            });
+        }
+        int stateCount = states.size();
+        this.keywords = new String[maxId + 1];
+        int size = 0;
+        for (State state : states) {
+            if (state.hasKeyword()) {
+                keywords[state.getId()] = state.getKeyword();
+                size++;
+            }
+        }
+        states.clear();
+        this.size = size;
+        this.payloads = Arrays.copyOf(payloads, keywords.length);
+        this.maxLength = maxLength;
+        // The normalizer is composed into the codes, each char is mapped to the code of its normalized char.
+        if (previous != null && sameAlphabet(previous.codes, frequencies, table)) {
+            this.codes = previous.codes;
+            this.foldCodes = previous.foldCodes;
+        } else {
+            this.codes = buildCodes(frequencies, table);
+            this.foldCodes = buildFoldCodes(codes);
+        }
+        this.surrogates = table != null && table.hasSupplementary() ? table : null;
+        int alphabetSize = 0;
+        for (int frequency : frequencies) {
+            if (frequency > 0) {
+                alphabetSize++;
+            }
+        }
+
+        // Places the states breadth-first, so the failure of each state is placed before it.
+        DoubleArrayBuilder builder = new DoubleArrayBuilder(stateCount + (stateCount >> 1));
+        int[] fail = new int[stateCount];
+        int[] output = new int[stateCount];
+        Arrays.fill(output, -1);
+        IntList outputs = new IntList(keywords.length * 2);
+        List<State> queue = new ArrayList<>();
+        IntList slots = new IntList(16);
+        queue.add(root);
+        slots.add(ROOT);
+        int[] labels = new int[16];
+        char[] chars = new char[16];
+        State[] children = new State[16];
+        for (int head = 0; head < queue.size(); head++) {
+            State state = queue.get(head);
+            queue.set(head, null);
+            int slot = slots.get(head);
+            int count = state.getSuccessCount();
+            if (count == 0) {
+                continue;
+            }
+            if (labels.length < count) {
+                labels = new int[count];
+                chars = new char[count];
+                children = new State[count];
+            }
+            state.copySuccess(chars, children);
+            for (int i = 0; i < count; i++) {
+                labels[i] = codes[chars[i]];
+            }
+            sort(labels, children, count);
+            int b = builder.insert(slot, labels, count);
+            int f = fail[slot];
+            for (int i = 0; i < count; i++) {
+                int child = b + labels[i];
+                if (child >= fail.length) {
+                    int newLength = Math.max(child + 1, fail.length + (fail.length >> 1));
+                    int oldLength = output.length;
+                    fail = Arrays.copyOf(fail, newLength);
+                    output = Arrays.copyOf(output, newLength);
+                    Arrays.fill(output, oldLength, newLength, -1);
+                }
+                int childFail = slot != ROOT ? builder.failure(fail, f, labels[i]) : ROOT;
+                fail[child] = childFail;
+                output[child] = children[i].hasKeyword()
+                        ? DoubleArrayBuilder.addOutput(outputs, children[i].getId(), output[childFail])
+                        : output[childFail];
+                queue.add(children[i]);
+                slots.add(child);
+            }
+        }
+        this.base = builder.base(alphabetSize);
+        this.check = builder.check(alphabetSize);
+        this.fail = Arrays.copyOf(fail, check.length);
+        this.output = Arrays.copyOf(output, check.length);
+        if (output.length < check.length) {
+            Arrays.fill(this.output, output.length, check.length, -1);
+        }
+        this.outputs = outputs.toArray();
+        this.options = options.copy();
+        this.stride = alphabetSize + 1;
+        long entries = (long) check.length * stride;
+        this.dfa = options.isDeterministic() && entries * 4 <= options.getMaxDfaBytes() && entries <= MAX_DFA_ENTRIES
+                ? buildDfa(slots) : null;
+        if (options.isPrefilter() && size > 0) {
+            this.firsts = buildFirsts(false);
+            this.foldFirsts = buildFirsts(true);
+        } else {
+            this.firsts = null;
+            this.foldFirsts = null;
+        }
+    }
+
+    public Emits findAll(CharSequence text, boolean ignoreCase) {
+        Emits emits = new Emits(text);
+        long[] firsts = firsts(ignoreCase);
+        int state = ROOT;
+        for (int i = 0, len = text.length(); i < len; i++) {
+            if (state == ROOT && firsts != null && (i = skip(text, i, len, firsts)) == len) {
+                break;
+            }
+            state = nextState(state, charAt(text, i), ignoreCase);
+            int o = output[state];
+            if (o < 0) {
+                continue;
+            }
+            for (int j = o + 1, end = o + outputs[o]; j <= end; j++) {
+                emits.add(emit(i + 1, outputs[j]));
+            }
+        }
+        return emits;
+    }
+
+    public Emits findAll(CharSequence text) {
+        return findAll(text, false);
+    }
+
+    public Emits findAllIgnoreCase(CharSequence text) {
+        return findAll(text, true);
+    }
+
+    /**
+     * Finds at most the given number of keywords, the scan stops as soon as the limit is reached,
+     * so the work and the memory are bounded whatever the text is.
+     *
+     * @param text       the text
+     * @param ignoreCase whether to ignore case
+     * @param limit      the maximum number of emits
+     * @return the first emits in the same order as {@link #findAll(CharSequence, boolean)}
+     */
+    public Emits findAll(CharSequence text, boolean ignoreCase, int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("Illegal limit: " + limit);
+        }
+        Emits emits = new Emits(text);
+        if (limit == 0) {
+            return emits;
+        }
+        scan(text, ignoreCase, (begin, end, id) -> emits.add(emit(end, id)) && emits.size() < limit);
+        return emits;
+    }
+
+    public Emits findAll(CharSequence text, int limit) {
+        return findAll(text, false, limit);
+    }
+
+    /**
+     * Counts the occurrences of each keyword, the counts are added to the array indexed by keyword id.
+     * Nothing is allocated.
+     *
+     * @param text       the text
+     * @param ignoreCase whether to ignore case
+     * @param counts     the counts, at least {@link #getMaxId()} {@code + 1} long
+     * @return the total number of matches
+     */
+    public long count(CharSequence text, boolean ignoreCase, int[] counts) {
+        checkLength(counts);
+        long total = 0;
+        long[] firsts = firsts(ignoreCase);
+        int state = ROOT;
+        for (int i = 0, len = text.length(); i < len; i++) {
+            if (state == ROOT && firsts != null && (i = skip(text, i, len, firsts)) == len) {
+                break;
+            }
+            state = nextState(state, charAt(text, i), ignoreCase);
+            int o = output[state];
+            if (o < 0) {
+                continue;
+            }
+            for (int j = o + 1, end = o + outputs[o]; j <= end; j++) {
+                counts[outputs[j]]++;
+            }
+            total += outputs[o];
+        }
+        return total;
+    }
+
+    public long count(CharSequence text, int[] counts) {
+        return count(text, false, counts);
+    }
+
+    /**
+     * Finds the first occurrence of each keyword, the beginning indexes are stored in the array indexed
+     * by keyword id, {@code -1} for the keywords which do not occur. The scan stops once every keyword
+     * has been found. Nothing is allocated.
+     *
+     * @param text       the text
+     * @param ignoreCase whether to ignore case
+     * @param begins     the beginning indexes, at least {@link #getMaxId()} {@code + 1} long
+     * @return the number of distinct keywords found
+     */
+    public int findFirstOfEach(CharSequence text, boolean ignoreCase, int[] begins) {
+        checkLength(begins);
+        Arrays.fill(begins, 0, keywords.length, -1);
+        int found = 0;
+        long[] firsts = firsts(ignoreCase);
+        int state = ROOT;
+        for (int i = 0, len = text.length(); i < len && found < size; i++) {
+            if (state == ROOT && firsts != null && (i = skip(text, i, len, firsts)) == len) {
+                break;
+            }
+            state = nextState(state, charAt(text, i), ignoreCase);
+            int o = output[state];
+            if (o < 0) {
+                continue;
+            }
+            for (int j = o + 1, end = o + outputs[o]; j <= end; j++) {
+                int id = outputs[j];
+                if (begins[id] < 0) {
+                    begins[id] = i - keywords[id].length() + 1;
+                    found++;
+                }
+            }
+        }
+        return found;
+    }
+
+    public int findFirstOfEach(CharSequence text, int[] begins) {
+        return findFirstOfEach(text, false, begins);
+    }
+
+    /**
+     * Finds the last occurrence of each keyword, the beginning indexes are stored in the array indexed
+     * by keyword id, {@code -1} for the keywords which do not occur. Nothing is allocated.
+     *
+     * @param text       the text
+     * @param ignoreCase whether to ignore case
+     * @param begins     the beginning indexes, at least {@link #getMaxId()} {@code + 1} long
+     * @return the number of distinct keywords found
+     */
+    public int findLastOfEach(CharSequence text, boolean ignoreCase, int[] begins) {
+        checkLength(begins);
+        Arrays.fill(begins, 0, keywords.length, -1);
+        int found = 0;
+        long[] firsts = firsts(ignoreCase);
+        int state = ROOT;
+        for (int i = 0, len = text.length(); i < len; i++) {
+            if (state == ROOT && firsts != null && (i = skip(text, i, len, firsts)) == len) {
+                break;
+            }
+            state = nextState(state, charAt(text, i), ignoreCase);
+            int o = output[state];
+            if (o < 0) {
+                continue;
+            }
+            for (int j = o + 1, end = o + outputs[o]; j <= end; j++) {
+                int id = outputs[j];
+                if (begins[id] < 0) {
+                    found++;
+                }
+                begins[id] = i - keywords[id].length() + 1;
+            }
+        }
+        return found;
+    }
+
+    public int findLastOfEach(CharSequence text, int[] begins) {
+        return findLastOfEach(text, false, begins);
+    }
+
+    /**
+     * Finds all keywords, ignoring the skip chars between the chars of a keyword. The emits cover the
+     * obfuscated spans of the text, so {@link Emits#replaceWith(String)} masks the skip chars inside them.
+     *
+     * @param text       the text
+     * @param ignoreCase whether to ignore case
+     * @param skipChars  the chars to skip
+     * @return the emits
+     */
+    public Emits findAll(CharSequence text, boolean ignoreCase, SkipChars skipChars) {
+        Emits emits = new Emits(text);
+        scan(text, ignoreCase, skipChars, (begin, end, id) -> {
+            String keyword = keywords[id];
+            return emits.add(new Emit(begin, end, keyword, id, payloads[id]));
+        });
+        return emits;
+    }
+
+    public Emits findAll(CharSequence text, SkipChars skipChars) {
+        return findAll(text, false, skipChars);
+    }
+
+    /**
+     * Finds the keywords with the given match kind, with a leftmost kind, only the selected
+     * non-overlapping matches are created.
+     *
+     * @param text       the text
+     * @param ignoreCase whether to ignore case
+     * @param kind       the match kind
+     * @return the emits
+     */
+    public Emits findAll(CharSequence text, boolean ignoreCase, MatchKind kind) {
+        if (kind == MatchKind.STANDARD) {
+            return findAll(text, ignoreCase);
+        }
+        Emits emits = new Emits(text);
+        scan(text, ignoreCase, kind, (begin, end, id) -> emits.add(emit(end, id)));
+        return emits;
+    }
+
+    public Emits findAll(CharSequence text, MatchKind kind) {
+        return findAll(text, false, kind);
+    }
+
+    /**
+     * Finds all keywords with the given pool. The text is split into chunks which overlap by the length
+     * of the longest keyword, the chunks are scanned concurrently, and only the matches ending inside
+     * each chunk are kept, so the result is the same as {@link #findAll(CharSequence, boolean)}.
+     * The text must not be changed during the search.
+     *
+     * @param text       the text
+     * @param ignoreCase whether to ignore case
+     * @param pool       the pool to search with
+     * @return the emits in the same order as {@link #findAll(CharSequence, boolean)}
+     */
+    public Emits findAllParallel(CharSequence text, boolean ignoreCase, ForkJoinPool pool) {
+        int len = text.length();
+        int chunkSize = Math.max(MIN_CHUNK_SIZE, len / (pool.getParallelism() * 4) + 1);
+        if (len <= chunkSize || maxLength == 0) {
+            return findAll(text, ignoreCase);
+        }
+        int chunks = (len + chunkSize - 1) / chunkSize;
+        Emits emits = new Emits(text);
+        for (Emits chunk : pool.invoke(new SearchTask(text, ignoreCase, chunkSize, 0, chunks))) {
+            emits.addAll(chunk);
+        }
+        return emits;
+    }
+
+    public Emits findAllParallel(CharSequence text, ForkJoinPool pool) {
+        return findAllParallel(text, false, pool);
+    }
+
+    /**
+     * Finds all keywords in a batch of documents. The matches are appended to a few growable
+     * primitive columns shared by all the documents, so there is no per-document allocation.
+     *
+     * @param texts      the documents
+     * @param ignoreCase whether to ignore case
+     * @return the matches of all the documents
+     */
+    public BatchEmits findAll(List<? extends CharSequence> texts, boolean ignoreCase) {
+        Batch batch = new Batch(texts.size());
+        findAll(texts, 0, texts.size(), ignoreCase, batch);
+        return batch.toEmits(keywords, payloads);
+    }
+
+    public BatchEmits findAll(List<? extends CharSequence> texts) {
+        return findAll(texts, false);
+    }
+
+    public BatchEmits findAll(CharSequence[] texts, boolean ignoreCase) {
+        return findAll(Arrays.asList(texts), ignoreCase);
+    }
+
+    /**
+     * Finds all keywords in a batch of documents, the documents are split into groups
+     * which are searched concurrently with the executor.
+     *
+     * @param texts      the documents
+     * @param ignoreCase whether to ignore case
+     * @param executor   the executor to search with
+     * @return the matches of all the documents, in the same order as {@link #findAll(List, boolean)}
+     */
+    public BatchEmits findAll(List<? extends CharSequence> texts, boolean ignoreCase, Executor executor) {
+        int size = texts.size();
+        if (size <= BATCH_SIZE) {
+            return findAll(texts, ignoreCase);
+        }
+        List<CompletableFuture<Batch>> futures = new ArrayList<>();
+        for (int from = 0; from < size; from += BATCH_SIZE) {
+            int begin = from;
+            int end = Math.min(from + BATCH_SIZE, size);
+            futures.add(CompletableFuture.supplyAsync(() -> {
+                Batch batch = new Batch(end - begin);
+                findAll(texts, begin, end, ignoreCase, batch);
+                return batch;
+            }, executor));
+        }
+        Batch batch = new Batch(size);
+        for (CompletableFuture<Batch> future : futures) {
+            Batch part;
+            try {
+                part = future.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw e;
+            }
+            batch.addAll(part);
+        }
+        return batch.toEmits(keywords, payloads);
+    }
+
+    public BatchEmits findAll(List<? extends CharSequence> texts, Executor executor) {
+        return findAll(texts, false, executor);
+    }
+
+    public Emit findFirst(CharSequence text, boolean ignoreCase) {
+        long[] firsts = firsts(ignoreCase);
+        int state = ROOT;
+        for (int i = 0, len = text.length(); i < len; i++) {
+            if (state == ROOT && firsts != null && (i = skip(text, i, len, firsts)) == len) {
+                break;
+            }
+            state = nextState(state, charAt(text, i), ignoreCase);
+            int o = output[state];
+            if (o >= 0) {
+                return emit(i + 1, outputs[o + 1]);
+            }
+        }
+        return null;
+    }
+
+    public Emit findFirst(CharSequence text) {
+        return findFirst(text, false);
+    }
+
+    public Emit findFirstIgnoreCase(CharSequence text) {
+        return findFirst(text, true);
+    }
+
+    /**
+     * Scans the text and passes every match to the handler, in the same order as {@link #findAll(CharSequence, boolean)}.
+     * Apart from the handler, nothing is allocated.
+     *
+     * @param text       the text
+     * @param ignoreCase whether to ignore case
+     * @param handler    the handler
+     * @return {@code true} if the whole text has been scanned, {@code false} if the handler stopped the scan
+     */
+    public boolean scan(CharSequence text, boolean ignoreCase, MatchHandler handler) {
+        long[] firsts = firsts(ignoreCase);
+        int state = ROOT;
+        for (int i = 0, len = text.length(); i < len; i++) {
+            if (state == ROOT && firsts != null && (i = skip(text, i, len, firsts)) == len) {
+                break;
+            }
+            state = nextState(state, charAt(text, i), ignoreCase);
+            int o = output[state];
+            if (o < 0) {
+                continue;
+            }
+            for (int j = o + 1, end = o + outputs[o]; j <= end; j++) {
+                int id = outputs[j];
+                if (!handler.onMatch(i - keywords[id].length() + 1, i + 1, id)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Scans the text and passes every match to the handler, ignoring the skip chars between the chars of
+     * a keyword. The positions of the last chars passed to the automaton are kept in a ring, so each char
+     * is read once and nothing is backtracked.
+     *
+     * @param text       the text
+     * @param ignoreCase whether to ignore case
+     * @param skipChars  the chars to skip
+     * @param handler    the handler
+     * @return {@code true} if the whole text has been scanned, {@code false} if the handler stopped the scan
+     * @see SkipChars
+     */
+    public boolean scan(CharSequence text, boolean ignoreCase, SkipChars skipChars, MatchHandler handler) {
+        PositionRing ring = new PositionRing(maxLength);
+        int maxGap = skipChars.getMaxGap();
+        long[] firsts = firsts(ignoreCase);
+        int state = ROOT;
+        int gap = 0;
+        for (int i = 0, len = text.length(); i < len; i++) {
+            if (state == ROOT && firsts != null && (i = skip(text, i, len, firsts)) == len) {
+                break;
+            }
+            if (skipChars.contains(text.charAt(i))) {
+                if (++gap > maxGap) {
+                    state = ROOT;
+                }
+                continue;
+            }
+            gap = 0;
+            ring.add(i);
+            state = nextState(state, charAt(text, i), ignoreCase);
+            int o = output[state];
+            if (o < 0) {
+                continue;
+            }
+            for (int j = o + 1, end = o + outputs[o]; j <= end; j++) {
+                int id = outputs[j];
+                if (!handler.onMatch(ring.get(keywords[id].length() - 1), i + 1, id)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    public boolean scan(CharSequence text, MatchHandler handler) {
+        return scan(text, false, handler);
+    }
+
+    public boolean scanIgnoreCase(CharSequence text, MatchHandler handler) {
+        return scan(text, true, handler);
+    }
+
+    /**
+     * Scans the text and passes the matches of the given kind to the handler. With a leftmost kind,
+     * the matches are selected while scanning and passed in ascending order of the beginning index,
+     * a match is passed once no later match can take its place.
+     *
+     * @param text       the text
+     * @param ignoreCase whether to ignore case
+     * @param kind       the match kind
+     * @param handler    the handler
+     * @return {@code true} if the whole text has been scanned, {@code false} if the handler stopped the scan
+     */
+    public boolean scan(CharSequence text, boolean ignoreCase, MatchKind kind, MatchHandler handler) {
+        if (kind == MatchKind.STANDARD) {
+            return scan(text, ignoreCase, handler);
+        }
+        MatchSelector selector = new MatchSelector(kind, maxLength,
+                (begin, end, id) -> handler.onMatch((int) begin, (int) end, id));
+        return scan(text, ignoreCase, (begin, end, id) -> selector.onMatch(begin, end, id)) && selector.flush();
+    }
+
+    /**
+     * Scans the chars read from the reader, the automaton state is kept between the buffers,
+     * so the matches crossing the buffer boundaries are found, and the memory used does not
+     * depend on the length of the input. The reader is not closed.
+     *
+     * @param reader     the reader
+     * @param ignoreCase whether to ignore case
+     * @param handler    the handler
+     * @return {@code true} if the whole input has been scanned, {@code false} if the handler stopped the scan
+     */
+    public boolean scan(Reader reader, boolean ignoreCase, StreamMatchHandler handler) {
+        char[] buffer = new char[BUFFER_SIZE];
+        Cursor cursor = new Cursor();
+        try {
+            int n;
+            while ((n = reader.read(buffer)) >= 0) {
+                if (!scan(buffer, 0, n, ignoreCase, cursor, handler)) {
+                    return false;
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e);
+        }
+        return true;
+    }
+
+    public boolean scan(Reader reader, StreamMatchHandler handler) {
+        return scan(reader, false, handler);
+    }
+
+    /**
+     * @see #scan(Reader, boolean, StreamMatchHandler)
+     * @see #scan(CharSequence, boolean, MatchKind, MatchHandler)
+     */
+    public boolean scan(Reader reader, boolean ignoreCase, MatchKind kind, StreamMatchHandler handler) {
+        if (kind == MatchKind.STANDARD) {
+            return scan(reader, ignoreCase, handler);
+        }
+        MatchSelector selector = new MatchSelector(kind, maxLength, handler);
+        return scan(reader, ignoreCase, selector) && selector.flush();
+    }
+
+    /**
+     * Writes the text to the output with the matched regions replaced, without creating the emits.
+     * With {@link MatchKind#STANDARD}, the overlapping matches are merged into one region, like
+     * {@link Emits#replaceWith(String)} does, and each region is replaced with the keyword matched at its beginning.
+     * With a leftmost kind, each selected match is replaced.
+     *
+     * @param text       the text
+     * @param ignoreCase whether to ignore case
+     * @param kind       the match kind
+     * @param replacer   the replacer
+     * @param out        the output
+     * @throws IllegalArgumentException if the output cannot be written
+     */
+    public void replace(CharSequence text, boolean ignoreCase, MatchKind kind, Replacer replacer, Appendable out) {
+        ReplaceWriter writer = new ReplaceWriter(out, replacer, kind, maxLength, text);
+        StreamMatchHandler handler = writer.getHandler();
+        scan(text, ignoreCase, (begin, end, id) -> handler.onMatch(begin, end, id));
+        writer.finish(text.length());
+    }
+
+    public void replace(CharSequence text, Replacer replacer, Appendable out) {
+        replace(text, false, MatchKind.STANDARD, replacer, out);
+    }
+
+    public String replace(CharSequence text, boolean ignoreCase, MatchKind kind, Replacer replacer) {
+        StringBuilder sb = new StringBuilder(text.length());
+        replace(text, ignoreCase, kind, replacer, sb);
+        return sb.toString();
+    }
+
+    /**
+     * Writes the chars read from the reader to the output with the matched regions replaced,
+     * only the chars which may still be replaced are buffered. The reader is not closed.
+     *
+     * @param reader     the reader
+     * @param ignoreCase whether to ignore case
+     * @param kind       the match kind
+     * @param replacer   the replacer
+     * @param out        the output, for example a {@link java.io.Writer} or a {@link CharBuffer}
+     * @throws IllegalArgumentException if the input cannot be read or the output cannot be written
+     * @see #replace(CharSequence, boolean, MatchKind, Replacer, Appendable)
+     */
+    public void replace(Reader reader, boolean ignoreCase, MatchKind kind, Replacer replacer, Appendable out) {
+        ReplaceWriter writer = new ReplaceWriter(out, replacer, kind, maxLength, null);
+        StreamMatchHandler handler = writer.getHandler();
+        char[] window = new char[BUFFER_SIZE];
+        long windowStart = 0;
+        int length = 0;
+        Cursor cursor = new Cursor();
+        try {
+            for (; ; ) {
+                if (length == window.length) {
+                    // Drops the chars which have been written, and grows the window if it is still full.
+                    int written = (int) (writer.getWritten() - windowStart);
+                    if (written > 0) {
+                        System.arraycopy(window, written, window, 0, length - written);
+                        length -= written;
+                        windowStart += written;
+                    }
+                    if (length == window.length) {
+                        window = Arrays.copyOf(window, window.length << 1);
+                    }
+                }
+                writer.setWindow(window, windowStart);
+                int n = reader.read(window, length, window.length - length);
+                if (n < 0) {
+                    break;
+                }
+                scan(window, length, length + n, ignoreCase, cursor, handler);
+                length += n;
+                writer.advance(cursor.position);
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e);
+        }
+        writer.finish(cursor.position);
+    }
+
+    public void replace(Reader reader, Replacer replacer, Appendable out) {
+        replace(reader, false, MatchKind.STANDARD, replacer, out);
+    }
+
+    /**
+     * Scans the bytes read from the channel and decoded with the charset,
+     * malformed input is replaced as {@link java.io.InputStreamReader} does. The channel is not closed.
+     *
+     * @param channel    the channel
+     * @param charset    the charset of the bytes
+     * @param ignoreCase whether to ignore case
+     * @param handler    the handler
+     * @return {@code true} if the whole input has been scanned, {@code false} if the handler stopped the scan
+     * @see #scan(Reader, boolean, StreamMatchHandler)
+     */
+    public boolean scan(ReadableByteChannel channel, Charset charset, boolean ignoreCase, StreamMatchHandler handler) {
+        CharsetDecoder decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        ByteBuffer bytes = ByteBuffer.allocate(BUFFER_SIZE);
+        CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE);
+        Cursor cursor = new Cursor();
+        try {
+            boolean eof = false;
+            while (!eof) {
+                eof = channel.read(bytes) < 0;
+                bytes.flip();
+                CoderResult result;
+                do {
+                    result = decoder.decode(bytes, chars, eof);
+                    if (!scan(chars, ignoreCase, cursor, handler)) {
+                        return false;
+                    }
+                } while (result.isOverflow());
+                bytes.compact();
+            }
+            CoderResult result;
+            do {
+                result = decoder.flush(chars);
+                if (!scan(chars, ignoreCase, cursor, handler)) {
+                    return false;
+                }
+            } while (result.isOverflow());
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e);
+        }
+        return true;
+    }
+
+    public boolean scan(ReadableByteChannel channel, Charset charset, StreamMatchHandler handler) {
+        return scan(channel, charset, false, handler);
+    }
+
+    /**
+     * Writes this trie in the binary format which can be searched directly by a {@link MappedTrie}.
+     * The normalizer is kept in the codes, and in the table of the low surrogates for the supplementary
+     * code points. The stream is not closed.
+     *
+     * @param out the output stream
+     * @see MappedTrie
+     */
+    public void writeTo(OutputStream out) {
+        int keywordChars = 0;
+        for (String keyword : keywords) {
+            keywordChars += keyword != null ? keyword.length() : 0;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE).order(MappedTrie.ORDER);
+        try {
+            int[] surrogateCodePoints = surrogates != null ? surrogates.getCodePoints() : new int[0];
+            int[] surrogateLows = new int[surrogateCodePoints.length];
+            for (int i = 0; i < surrogateLows.length; i++) {
+                surrogateLows[i] = surrogates.getLows()[i];
+            }
+            int[] header = {MappedTrie.MAGIC, MappedTrie.VERSION, 0, codes.length, foldCodes.length,
+                    check.length, outputs.length, keywords.length, keywordChars, surrogateCodePoints.length};
+            write(out, buffer, header);
+            write(out, buffer, codes);
+            write(out, buffer, foldCodes);
+            write(out, buffer, base);
+            write(out, buffer, check);
+            write(out, buffer, fail);
+            write(out, buffer, output);
+            write(out, buffer, outputs);
+            write(out, buffer, surrogateCodePoints);
+            write(out, buffer, surrogateLows);
+            int[] offsets = new int[keywords.length + 1];
+            for (int i = 0; i < keywords.length; i++) {
+                offsets[i + 1] = offsets[i] + (keywords[i] != null ? keywords[i].length() : 0);
+            }
+            write(out, buffer, offsets);
+            for (String keyword : keywords) {
+                for (int i = 0; keyword != null && i < keyword.length(); i++) {
+                    if (buffer.remaining() < 2) {
+                        flush(out, buffer);
+                    }
+                    buffer.putChar(keyword.charAt(i));
+                }
+            }
+            flush(out, buffer);
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    /**
+     * Writes this trie to the file in the binary format, which can be opened by {@link MappedTrie#open(Path)}.
+     *
+     * @param path the file
+     */
+    public void writeTo(Path path) {
+        try (OutputStream out = Files.newOutputStream(path)) {
+            writeTo(out);
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    /**
+     * Returns the keyword with the given id.
+     *
+     * @param id the id of the keyword, from {@code 0} to {@link #getMaxId()} inclusive
+     * @return the keyword, {@code null} if the id is not in use
+     */
+    public String getKeyword(int id) {
+        return keywords[id];
+    }
+
+    /**
+     * Returns the payload of the keyword with the given id.
+     *
+     * @param id the id of the keyword, from {@code 0} to {@link #getMaxId()} inclusive
+     * @return the payload, {@code null} if none
+     */
+    @SuppressWarnings("unchecked")
+    public <V> V getPayload(int id) {
+        return (V) payloads[id];
+    }
+
+    /**
+     * Returns the largest keyword id, {@code -1} if there is no keyword.
+     */
+    public int getMaxId() {
+        return keywords.length - 1;
+    }
+
+    /**
+     * Returns the number of keywords.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of slots of the double-array, including the unused ones.
+     */
+    public int capacity() {
+        return check.length;
+    }
+
+    /**
+     * Returns whether the transitions are resolved at compile time, which is {@code false} if the
+     * deterministic mode is disabled or the transition table would exceed the memory cap.
+     *
+     * @see CompileOptions#withDeterministic(boolean)
+     */
+    public boolean isDeterministic() {
+        return dfa != null;
+    }
+
+    /**
+     * Returns a copy of the options this trie was compiled with.
+     */
+    public CompileOptions getOptions() {
+        return options.copy();
+    }
+
+    /**
+     * Resolves the transitions of the slots in breadth-first order, so the row of the failure of each slot
+     * is complete before the slot, and the missing transitions are copied from it.
+     */
+    private int[] buildDfa(IntList slots) {
+        int[] dfa = new int[check.length * stride];
+        for (int i = 0; i < slots.size(); i++) {
+            int slot = slots.get(i);
+            int row = slot * stride;
+            int failRow = fail[slot] * stride;
+            int b = base[slot];
+            for (int code = 1; code < stride; code++) {
+                int next = b + code;
+                if (next < check.length && check[next] == slot) {
+                    dfa[row + code] = next;
+                } else {
+                    dfa[row + code] = slot == ROOT ? ROOT : dfa[failRow + code];
+                }
+            }
+            dfa[row] = ROOT;
+        }
+        return dfa;
+    }
+
+    private boolean scan(CharBuffer chars, boolean ignoreCase, Cursor cursor, StreamMatchHandler handler) {
+        chars.flip();
+        boolean completed = scan(chars.array(), chars.arrayOffset() + chars.position(),
+                chars.arrayOffset() + chars.limit(), ignoreCase, cursor, handler);
+        chars.clear();
+        return completed;
+    }
+
+    private boolean scan(char[] chars, int from, int to, boolean ignoreCase, Cursor cursor, StreamMatchHandler handler) {
+        long[] firsts = firsts(ignoreCase);
+        int state = cursor.state;
+        long position = cursor.position - from;
+        for (int i = from; i < to; i++) {
+            if (state == ROOT && firsts != null && (i = skip(chars, i, to, firsts)) == to) {
+                break;
+            }
+            char c = chars[i];
+            if (surrogates != null && Character.isLowSurrogate(c)) {
+                c = surrogates.normalizeLow(i > from ? chars[i - 1] : cursor.last, c);
+            }
+            state = nextState(state, c, ignoreCase);
+            int o = output[state];
+            if (o < 0) {
+                continue;
+            }
+            long end = position + i + 1;
+            for (int j = o + 1, last = o + outputs[o]; j <= last; j++) {
+                int id = outputs[j];
+                if (!handler.onMatch(end - keywords[id].length(), end, id)) {
+                    return false;
+                }
+            }
+        }
+        cursor.state = state;
+        cursor.position = position + to;
+        if (to > from) {
+            cursor.last = chars[to - 1];
+        }
+        return true;
+    }
+
+    /**
+     * Finds the keywords ending in the given range, the scan starts early enough
+     * for the automaton to be in the right state at the beginning of the range.
+     */
+    private Emits findAll(CharSequence text, int from, int to, boolean ignoreCase) {
+        Emits emits = new Emits(text);
+        long[] firsts = firsts(ignoreCase);
+        int state = ROOT;
+        for (int i = Math.max(0, from - maxLength + 1); i < to; i++) {
+            if (state == ROOT && firsts != null && (i = skip(text, i, to, firsts)) == to) {
+                break;
+            }
+            state = nextState(state, charAt(text, i), ignoreCase);
+            int o = output[state];
+            if (o < 0 || i < from) {
+                continue;
+            }
+            for (int j = o + 1, end = o + outputs[o]; j <= end; j++) {
+                emits.add(emit(i + 1, outputs[j]));
+            }
+        }
+        return emits;
+    }
+
+    private void findAll(List<? extends CharSequence> texts, int from, int to, boolean ignoreCase, Batch batch) {
+        long[] firsts = firsts(ignoreCase);
+        char[] chars = batch.chars;
+        for (int d = from; d < to; d++) {
+            CharSequence text = texts.get(d);
+            int len = text.length();
+            if (chars.length < len) {
+                chars = batch.chars = new char[Math.max(len, chars.length << 1)];
+            }
+            if (text instanceof String) {
+                ((String) text).getChars(0, len, chars, 0);
+            } else {
+                for (int i = 0; i < len; i++) {
+                    chars[i] = text.charAt(i);
+                }
+            }
+            if (surrogates != null) {
+                // The high surrogates are never changed, so each low surrogate still follows the original one.
+                for (int i = 1; i < len; i++) {
+                    if (Character.isLowSurrogate(chars[i])) {
+                        chars[i] = surrogates.normalizeLow(chars[i - 1], chars[i]);
+                    }
+                }
+            }
+            batch.offsets.add(batch.size);
+            int state = ROOT;
+            for (int i = 0; i < len; i++) {
+                if (state == ROOT && firsts != null && (i = skip(chars, i, len, firsts)) == len) {
+                    break;
+                }
+                state = nextState(state, chars[i], ignoreCase);
+                int o = output[state];
+                if (o < 0) {
+                    continue;
+                }
+                for (int j = o + 1, end = o + outputs[o]; j <= end; j++) {
+                    int id = outputs[j];
+                    batch.add(d, i - keywords[id].length() + 1, i + 1, id);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the char at the given index, with the low surrogate normalized if needed,
+     * the other chars are normalized by the codes.
+     */
+    private char charAt(CharSequence text, int index) {
+        char c = text.charAt(index);
+        if (surrogates != null && Character.isLowSurrogate(c) && index > 0) {
+            return surrogates.normalizeLow(text.charAt(index - 1), c);
+        }
+        return c;
+    }
+
+    private Emit emit(int end, int id) {
+        String keyword = keywords[id];
+        return new Emit(end - keyword.length(), end, keyword, id, payloads[id]);
+    }
+
+    private void checkLength(int[] array) {
+        if (array.length < keywords.length) {
+            throw new IllegalArgumentException("The array must be at least " + keywords.length + " long");
+        }
+    }
+
+    /**
+     * Moves from the given state on the char at the given index, so that several tries can scan a text in one pass.
+     */
+    int step(int state, CharSequence text, int index, boolean ignoreCase) {
+        return nextState(state, charAt(text, index), ignoreCase);
+    }
+
+    /**
+     * Passes the keywords ending at the given state to the handler, with the ids shifted by the given offset.
+     */
+    boolean onMatch(int state, int end, int offset, MatchHandler handler) {
+        int o = output[state];
+        if (o < 0) {
+            return true;
+        }
+        for (int j = o + 1, last = o + outputs[o]; j <= last; j++) {
+            int id = outputs[j];
+            if (!handler.onMatch(end - keywords[id].length(), end, id + offset)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private long[] firsts(boolean ignoreCase) {
+        return ignoreCase ? foldFirsts : firsts;
+    }
+
+    /**
+     * Returns the index of the first char from the given index which has a transition from the root, or the end.
+     */
+    private static int skip(CharSequence text, int i, int end, long[] firsts) {
+        for (; i < end; i++) {
+            char c = text.charAt(i);
+            if ((firsts[c >>> 6] & (1L << c)) != 0) {
+                break;
+            }
+        }
+        return i;
+    }
+
+    private static int skip(char[] chars, int i, int end, long[] firsts) {
+        for (; i < end; i++) {
+            char c = chars[i];
+            if ((firsts[c >>> 6] & (1L << c)) != 0) {
+                break;
+            }
+        }
+        return i;
+    }
+
+    /**
+     * Returns the bitsets of the chars with a transition from the root. The low surrogates are always included
+     * if they are normalized, since the normalized char depends on the preceding high surrogate.
+     */
+    private long[] buildFirsts(boolean ignoreCase) {
+        long[] firsts = new long[(Character.MAX_VALUE + 1) >>> 6];
+        int b = base[ROOT];
+        // A char above the keyword chars can still begin a match by its opposite case.
+        int length = ignoreCase ? Math.max(codes.length, foldCodes.length) : codes.length;
+        for (int c = 0; c < length; c++) {
+            int code = c < codes.length ? codes[c] : 0;
+            int fold = ignoreCase && c < foldCodes.length ? foldCodes[c] : 0;
+            if (code != 0 && b + code < check.length && check[b + code] == ROOT
+                    || fold != 0 && b + fold < check.length && check[b + fold] == ROOT) {
+                firsts[c >>> 6] |= 1L << c;
+            }
+        }
+        if (surrogates != null) {
+            for (int c = Character.MIN_LOW_SURROGATE; c <= Character.MAX_LOW_SURROGATE; c++) {
+                firsts[c >>> 6] |= 1L << c;
+            }
+        }
+        return firsts;
+    }
+
+    private int nextState(int state, char c, boolean ignoreCase) {
+        int code = c < codes.length ? codes[c] : 0;
+        if (dfa != null && !ignoreCase) {
+            return dfa[state * stride + code];
+        }
+        int fold = ignoreCase && c < foldCodes.length ? foldCodes[c] : 0;
+        if (code == 0 && fold == 0) {
+            return ROOT;
+        }
+        for (; ; ) {
+            int b = base[state];
+            if (code != 0 && check[b + code] == state) {
+                return b + code;
+            }
+            if (fold != 0 && check[b + fold] == state) {
+                return b + fold;
+            }
+            if (state == ROOT) {
+                return ROOT;
+            }
+            state = fail[state];
+        }
+    }
+
+    private static void write(OutputStream out, ByteBuffer buffer, int[] values) throws IOException {
+        for (int value : values) {
+            if (buffer.remaining() < 4) {
+                flush(out, buffer);
+            }
+            buffer.putInt(value);
+        }
+    }
+
+    private static void flush(OutputStream out, ByteBuffer buffer) throws IOException {
+        out.write(buffer.array(), 0, buffer.position());
+        buffer.clear();
+    }
+
+    /**
+     * Searches a range of chunks, and returns the emits of each chunk in order.
+     */
+    private final class SearchTask extends RecursiveTask<List<Emits>> {
+        private static final long serialVersionUID = 1L;
+        private final CharSequence text;
+        private final boolean ignoreCase;
+        private final int chunkSize;
+        private final int from;
+        private final int to;
+
+        SearchTask(CharSequence text, boolean ignoreCase, int chunkSize, int from, int to) {
+            this.text = text;
+            this.ignoreCase = ignoreCase;
+            this.chunkSize = chunkSize;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected List<Emits> compute() {
+            if (to - from == 1) {
+                int begin = from * chunkSize;
+                int end = (int) Math.min((long) begin + chunkSize, text.length());
+                List<Emits> result = new ArrayList<>();
+                result.add(findAll(text, begin, end, ignoreCase));
+                return result;
+            }
+            int mid = (from + to) >>> 1;
+            SearchTask left = new SearchTask(text, ignoreCase, chunkSize, from, mid);
+            SearchTask right = new SearchTask(text, ignoreCase, chunkSize, mid, to);
+            left.fork();
+            List<Emits> emits = right.compute();
+            List<Emits> result = left.join();
+            result.addAll(emits);
+            return result;
+        }
+    }
+
+    /**
+     * The growable columns and the scratch buffer of a batch search.
+     */
+    private static final class Batch {
+        final IntList offsets;
+        int[] documents = new int[64];
+        int[] begins = new int[64];
+        int[] ends = new int[64];
+        int[] keywordIds = new int[64];
+        int size;
+        char[] chars = new char[256];
+
+        Batch(int documentCount) {
+            this.offsets = new IntList(documentCount + 1);
+        }
+
+        void add(int document, int begin, int end, int keywordId) {
+            if (size == begins.length) {
+                grow(size + 1);
+            }
+            documents[size] = document;
+            begins[size] = begin;
+            ends[size] = end;
+            keywordIds[size] = keywordId;
+            size++;
+        }
+
+        void addAll(Batch batch) {
+            for (int i = 0; i < batch.offsets.size(); i++) {
+                offsets.add(size + batch.offsets.get(i));
+            }
+            if (size + batch.size > begins.length) {
+                grow(size + batch.size);
+            }
+            System.arraycopy(batch.documents, 0, documents, size, batch.size);
+            System.arraycopy(batch.begins, 0, begins, size, batch.size);
+            System.arraycopy(batch.ends, 0, ends, size, batch.size);
+            System.arraycopy(batch.keywordIds, 0, keywordIds, size, batch.size);
+            size += batch.size;
+        }
+
+        BatchEmits toEmits(String[] keywords, Object[] payloads) {
+            offsets.add(size);
+            return new BatchEmits(offsets.toArray(), Arrays.copyOf(documents, size), Arrays.copyOf(begins, size),
+                    Arrays.copyOf(ends, size), Arrays.copyOf(keywordIds, size), keywords, payloads);
+        }
+
+        private void grow(int minCapacity) {
+            int capacity = Math.max(minCapacity, begins.length + (begins.length >> 1));
+            documents = Arrays.copyOf(documents, capacity);
+            begins = Arrays.copyOf(begins, capacity);
+            ends = Arrays.copyOf(ends, capacity);
+            keywordIds = Arrays.copyOf(keywordIds, capacity);
+        }
+    }
+
+    /**
+     * The state of a stream scan between the buffers.
+     */
+    private static final class Cursor {
+        int state = ROOT;
+        /** The number of chars scanned. */
+        long position;
+        /** The last char scanned. */
+        char last;
+    }
+
+    private static boolean sameAlphabet(int[] codes, int[] frequencies, CharTable table) {
+        for (int c = 0; c < frequencies.length; c++) {
+            boolean present = c < codes.length && codes[c] != 0;
+            if (present != (frequencies[table != null ? table.normalize((char) c) : c] > 0)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Assigns codes by descending frequency, so the most common labels are packed densely,
+     * then maps each char to the code of its normalized char.
+     */
+    private static int[] buildCodes(int[] frequencies, CharTable table) {
+        List<Character> alphabet = new ArrayList<>();
+        int max = -1;
+        for (int c = 0; c < frequencies.length; c++) {
+            if (frequencies[c] > 0) {
+                alphabet.add((char) c);
+                max = c;
+            }
+        }
+        alphabet.sort((a, b) -> Integer.compare(frequencies[b], frequencies[a]));
+        int[] codes = new int[max + 1];
+        for (int i = 0; i < alphabet.size(); i++) {
+            codes[alphabet.get(i)] = i + 1;
+        }
+        if (table == null) {
+            return codes;
+        }
+        int[] composed = new int[0];
+        for (int c = 0; c <= Character.MAX_VALUE; c++) {
+            char n = table.normalize((char) c);
+            if (n < codes.length && codes[n] != 0) {
+                if (c >= composed.length) {
+                    composed = Arrays.copyOf(composed, Math.max(c + 1, composed.length * 2));
+                }
+                composed[c] = codes[n];
+            }
+        }
+        int length = composed.length;
+        while (length > 0 && composed[length - 1] == 0) {
+            length--;
+        }
+        return Arrays.copyOf(composed, length);
+    }
+
+    /**
+     * Maps each char to the code of its opposite case, as {@link State#getState(char, boolean)} does.
+     */
+    private static int[] buildFoldCodes(int[] codes) {
+        int[] foldCodes = new int[0];
+        for (int c = 0; c <= Character.MAX_VALUE; c++) {
+            char cc;
+            if (Character.isLowerCase((char) c)) {
+                cc = Character.toUpperCase((char) c);
+            } else if (Character.isUpperCase((char) c)) {
+                cc = Character.toLowerCase((char) c);
+            } else {
+                continue;
+            }
+            if (cc != c && cc < codes.length && codes[cc] != 0) {
+                if (c >= foldCodes.length) {
+                    foldCodes = Arrays.copyOf(foldCodes, c + 1);
+                }
+                foldCodes[c] = codes[cc];
+            }
+        }
+        return foldCodes;
+    }
+
+    private static void sort(int[] labels, State[] children, int count) {
+        if (count > 16) {
+            long[] keys = new long[count];
+            for (int i = 0; i < count; i++) {
+                keys[i] = ((long) labels[i] << 32) | i;
+            }
+            Arrays.sort(keys);
+            State[] copy = Arrays.copyOf(children, count);
+            for (int i = 0; i < count; i++) {
+                labels[i] = (int) (keys[i] >>> 32);
+                children[i] = copy[(int) keys[i]];
+            }
+            return;
+        }
+        // Insertion sort, the number of children is usually small.
+        for (int i = 1; i < count; i++) {
+            int label = labels[i];
+            State child = children[i];
+            int j = i - 1;
+            while (j >= 0 && labels[j] > label) {
+                labels[j + 1] = labels[j];
+                children[j + 1] = children[j];
+                j--;
+            }
+            labels[j + 1] = label;
+            children[j + 1] = child;
+        }
+    }
+}
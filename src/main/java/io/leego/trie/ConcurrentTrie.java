@@ -0,0 +1,299 @@
+package io.leego.trie;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+
+/**
+ * A thread-safe trie which can be searched while the keywords are being changed.
+ * <p>
+ * Readers search an immutable {@link CompiledTrie} snapshot obtained through a volatile read,
+ * so they never block and a search always completes against the snapshot it started with.
+ * Writers are serialized, they apply the changes to a private {@link Trie} incrementally,
+ * compile the next snapshot off to the side and publish it atomically.
+ *
+ * @param <V> the type of the payloads
+ * @author Leego Yih
+ */
+public class ConcurrentTrie<V> {
+    /** The trie which the changes are applied to, guarded by itself. */
+    private final Trie<V> trie;
+    private volatile Snapshot snapshot;
+    private volatile ResultCache cache;
+
+    public ConcurrentTrie() {
+        this.trie = new Trie<>();
+        this.snapshot = new Snapshot(trie.compile(), trie.getVersion());
+    }
+
+    public ConcurrentTrie(Map<String, ? extends V> keywords) {
+        this.trie = new Trie<>(keywords);
+        this.snapshot = new Snapshot(trie.compile(), trie.getVersion());
+    }
+
+    public ConcurrentTrie(Set<String> keywords) {
+        this.trie = new Trie<>(keywords);
+        this.snapshot = new Snapshot(trie.compile(), trie.getVersion());
+    }
+
+    public ConcurrentTrie(String... keywords) {
+        this.trie = new Trie<>(keywords);
+        this.snapshot = new Snapshot(trie.compile(), trie.getVersion());
+    }
+
+    public ConcurrentTrie<V> addKeywords(Set<String> keywords) {
+        return update(trie -> trie.addKeywords(keywords));
+    }
+
+    public ConcurrentTrie<V> addKeywords(Map<String, ? extends V> keywords) {
+        return update(trie -> trie.addKeywords(keywords));
+    }
+
+    public ConcurrentTrie<V> addKeyword(String keyword, V payload) {
+        return update(trie -> trie.addKeyword(keyword, payload));
+    }
+
+    public ConcurrentTrie<V> addKeywords(String... keywords) {
+        return addKeywords(toSet(keywords));
+    }
+
+    public ConcurrentTrie<V> removeKeywords(Set<String> keywords) {
+        return update(trie -> trie.removeKeywords(keywords));
+    }
+
+    public ConcurrentTrie<V> removeKeywords(String... keywords) {
+        return removeKeywords(toSet(keywords));
+    }
+
+    /**
+     * Applies several changes to the keywords and publishes them as a single snapshot.
+     * The given trie must not escape the updater.
+     *
+     * @param updater the function which changes the keywords
+     * @return this
+     */
+    public ConcurrentTrie<V> update(Consumer<Trie<V>> updater) {
+        synchronized (trie) {
+            long version = trie.getVersion();
+            updater.accept(trie);
+            if (trie.getVersion() != version) {
+                snapshot = new Snapshot(trie.compile(snapshot.trie), trie.getVersion());
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Recompiles the current keywords with the given options and publishes them,
+     * the later snapshots are compiled with the same options.
+     *
+     * @param options the options
+     * @return this
+     */
+    public ConcurrentTrie<V> withOptions(CompileOptions options) {
+        synchronized (trie) {
+            snapshot = new Snapshot(trie.compile(options), trie.getVersion());
+        }
+        return this;
+    }
+
+    /**
+     * Caches the results of {@link #findAll(CharSequence, boolean)} and {@link #findFirst(CharSequence, boolean)}
+     * for the repeated texts, the cached results are dropped once the keywords change. The cache must not be
+     * shared with another trie.
+     *
+     * @param cache the cache, {@code null} to disable caching
+     * @return this
+     */
+    public ConcurrentTrie<V> withCache(ResultCache cache) {
+        this.cache = cache;
+        return this;
+    }
+
+    public ResultCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Returns the current snapshot, which is never changed by later updates.
+     */
+    public CompiledTrie snapshot() {
+        return snapshot.trie;
+    }
+
+    /**
+     * Returns the version of the current snapshot, which is increased by every published change.
+     */
+    public long getVersion() {
+        return snapshot.version;
+    }
+
+    public Emits findAll(CharSequence text, boolean ignoreCase) {
+        Snapshot snapshot = this.snapshot;
+        ResultCache cache = this.cache;
+        if (cache == null || !cache.accepts(text)) {
+            return snapshot.trie.findAll(text, ignoreCase);
+        }
+        String s = (String) text;
+        int[] matches = cache.get(s, ResultCache.FIND_ALL, ignoreCase, snapshot.version);
+        if (matches == null) {
+            IntList list = new IntList(16);
+            snapshot.trie.scan(s, ignoreCase, (begin, end, id) -> {
+                list.add(begin);
+                list.add(end);
+                list.add(id);
+                return true;
+            });
+            matches = list.toArray();
+            cache.put(s, ResultCache.FIND_ALL, ignoreCase, snapshot.version, matches);
+        }
+        Emits emits = new Emits(text);
+        for (int i = 0; i < matches.length; i += 3) {
+            emits.add(emit(snapshot.trie, matches, i));
+        }
+        return emits;
+    }
+
+    public Emits findAll(CharSequence text) {
+        return findAll(text, false);
+    }
+
+    public Emits findAllIgnoreCase(CharSequence text) {
+        return findAll(text, true);
+    }
+
+    /**
+     * @see CompiledTrie#findAll(CharSequence, boolean, MatchKind)
+     */
+    public Emits findAll(CharSequence text, boolean ignoreCase, MatchKind kind) {
+        return snapshot.trie.findAll(text, ignoreCase, kind);
+    }
+
+    public Emits findAll(CharSequence text, MatchKind kind) {
+        return findAll(text, false, kind);
+    }
+
+    /**
+     * @see CompiledTrie#findAll(CharSequence, boolean, int)
+     */
+    public Emits findAll(CharSequence text, boolean ignoreCase, int limit) {
+        return snapshot.trie.findAll(text, ignoreCase, limit);
+    }
+
+    public Emits findAll(CharSequence text, int limit) {
+        return findAll(text, false, limit);
+    }
+
+    /**
+     * @see CompiledTrie#findAllParallel(CharSequence, boolean, ForkJoinPool)
+     */
+    public Emits findAllParallel(CharSequence text, boolean ignoreCase, ForkJoinPool pool) {
+        return snapshot.trie.findAllParallel(text, ignoreCase, pool);
+    }
+
+    public Emits findAllParallel(CharSequence text, ForkJoinPool pool) {
+        return findAllParallel(text, false, pool);
+    }
+
+    /**
+     * Finds all keywords in a batch of documents against the current snapshot.
+     *
+     * @see CompiledTrie#findAll(List, boolean)
+     */
+    public BatchEmits findAll(List<? extends CharSequence> texts, boolean ignoreCase) {
+        return snapshot.trie.findAll(texts, ignoreCase);
+    }
+
+    public BatchEmits findAll(List<? extends CharSequence> texts) {
+        return findAll(texts, false);
+    }
+
+    /**
+     * @see CompiledTrie#findAll(List, boolean, Executor)
+     */
+    public BatchEmits findAll(List<? extends CharSequence> texts, boolean ignoreCase, Executor executor) {
+        return snapshot.trie.findAll(texts, ignoreCase, executor);
+    }
+
+    public Emit findFirst(CharSequence text, boolean ignoreCase) {
+        Snapshot snapshot = this.snapshot;
+        ResultCache cache = this.cache;
+        if (cache == null || !cache.accepts(text)) {
+            return snapshot.trie.findFirst(text, ignoreCase);
+        }
+        String s = (String) text;
+        int[] matches = cache.get(s, ResultCache.FIND_FIRST, ignoreCase, snapshot.version);
+        if (matches == null) {
+            Emit emit = snapshot.trie.findFirst(s, ignoreCase);
+            matches = emit != null ? new int[]{emit.getBegin(), emit.getEnd(), emit.getId()} : new int[0];
+            cache.put(s, ResultCache.FIND_FIRST, ignoreCase, snapshot.version, matches);
+            return emit;
+        }
+        return matches.length != 0 ? emit(snapshot.trie, matches, 0) : null;
+    }
+
+    public Emit findFirst(CharSequence text) {
+        return findFirst(text, false);
+    }
+
+    public Emit findFirstIgnoreCase(CharSequence text) {
+        return findFirst(text, true);
+    }
+
+    /**
+     * Scans the text against the current snapshot. The keyword ids are only meaningful to that snapshot,
+     * scan a {@link #snapshot()} directly if they need to be resolved to keywords.
+     *
+     * @see CompiledTrie#scan(CharSequence, boolean, MatchHandler)
+     */
+    public boolean scan(CharSequence text, boolean ignoreCase, MatchHandler handler) {
+        return snapshot.trie.scan(text, ignoreCase, handler);
+    }
+
+    public boolean scan(CharSequence text, MatchHandler handler) {
+        return scan(text, false, handler);
+    }
+
+    /**
+     * Counts the occurrences of each keyword against the current snapshot, the array must be long
+     * enough for the largest keyword id of that snapshot.
+     *
+     * @see CompiledTrie#count(CharSequence, boolean, int[])
+     */
+    public long count(CharSequence text, boolean ignoreCase, int[] counts) {
+        return snapshot.trie.count(text, ignoreCase, counts);
+    }
+
+    public long count(CharSequence text, int[] counts) {
+        return count(text, false, counts);
+    }
+
+    private static Emit emit(CompiledTrie trie, int[] matches, int i) {
+        int id = matches[i + 2];
+        return new Emit(matches[i], matches[i + 1], trie.getKeyword(id), id, trie.getPayload(id));
+    }
+
+    private static Set<String> toSet(String... keywords) {
+        if (keywords == null || keywords.length == 0) {
+            return Collections.emptySet();
+        }
+        Set<String> keywordSet = new LinkedHashSet<>();
+        Collections.addAll(keywordSet, keywords);
+        return keywordSet;
+    }
+
+    private static final class Snapshot {
+        final CompiledTrie trie;
+        final long version;
+
+        Snapshot(CompiledTrie trie, long version) {
+            this.trie = trie;
+            this.version = version;
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package io.leego.trie;
+
+import java.util.Arrays;
+
+/**
+ * Packs the transitions of a trie into a double-array ({@code base}/{@code check}).
+ * A transition from slot {@code s} with label {@code k} leads to slot
+ * {@code base[s] + k}, which is valid if and only if {@code check[base[s] + k] == s}.
+ * Labels must be positive, the root always occupies slot {@code 0}.
+ *
+ * @author Leego Yih
+ */
+final class DoubleArrayBuilder {
+    static final int ROOT = 0;
+    static final int EMPTY = -1;
+    private int[] base;
+    private int[] check;
+    /** The number of slots in use, the highest used slot plus one. */
+    private int size;
+    /** The position where the search for free slots starts. */
+    private int nextCheckPos;
+    /** The largest base assigned so far. */
+    private int maxBase;
+
+    DoubleArrayBuilder(int capacity) {
+        capacity = Math.max(capacity, 16);
+        this.base = new int[capacity];
+        this.check = new int[capacity];
+        Arrays.fill(this.check, EMPTY);
+        this.check[ROOT] = ROOT;
+        this.size = 1;
+        this.nextCheckPos = 1;
+    }
+
+    /**
+     * Places the children of the given slot and returns the assigned base,
+     * the slot of each child is {@code base + labels[i]}.
+     *
+     * @param parent the slot of the parent
+     * @param labels the labels of the children in ascending order
+     * @param count  the number of children
+     * @return the base of the parent
+     */
+    int insert(int parent, int[] labels, int count) {
+        int first = labels[0];
+        int last = labels[count - 1];
+        int begin = Math.max(nextCheckPos, first + 1);
+        int nonzero = 0;
+        boolean free = false;
+        int b;
+        outer:
+        for (int pos = begin; ; pos++) {
+            ensure(pos + last - first + 1);
+            if (check[pos] != EMPTY) {
+                nonzero++;
+                continue;
+            } else if (!free) {
+                free = true;
+                if (begin == nextCheckPos) {
+                    nextCheckPos = pos;
+                }
+            }
+            b = pos - first;
+            for (int i = 1; i < count; i++) {
+                if (check[b + labels[i]] != EMPTY) {
+                    continue outer;
+                }
+            }
+            // Skips the region that is almost full next time.
+            if ((double) nonzero / (pos - begin + 1) >= 0.95) {
+                nextCheckPos = pos;
+            }
+            break;
+        }
+        base[parent] = b;
+        for (int i = 0; i < count; i++) {
+            check[b + labels[i]] = parent;
+        }
+        size = Math.max(size, b + last + 1);
+        maxBase = Math.max(maxBase, b);
+        return b;
+    }
+
+    /**
+     * Returns the slot reached from the given slot with the label, or {@code -1} if none.
+     */
+    int transition(int slot, int label) {
+        int next = base[slot] + label;
+        return next < check.length && check[next] == slot && next != ROOT ? next : -1;
+    }
+
+    /**
+     * Follows the failure links from the given slot until a transition with the label exists,
+     * and returns the target of the transition, or the root if there is none.
+     */
+    int failure(int[] fail, int slot, int label) {
+        for (; ; ) {
+            int next = transition(slot, label);
+            if (next >= 0) {
+                return next;
+            } else if (slot == ROOT) {
+                return ROOT;
+            }
+            slot = fail[slot];
+        }
+    }
+
+    /**
+     * Appends a new output list made of the keyword followed by the list at the given offset,
+     * as the longest keyword comes first in a {@link Trie}, and returns its offset.
+     */
+    static int addOutput(IntList outputs, int id, int offset) {
+        int count = offset >= 0 ? outputs.get(offset) : 0;
+        int result = outputs.size();
+        outputs.add(count + 1);
+        outputs.add(id);
+        for (int i = 1; i <= count; i++) {
+            outputs.add(outputs.get(offset + i));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the final {@code base} array, padded so that {@code base[s] + k}
+     * never exceeds the bounds for any label {@code k <= maxLabel}.
+     */
+    int[] base(int maxLabel) {
+        return Arrays.copyOf(base, length(maxLabel));
+    }
+
+    /**
+     * Returns the final {@code check} array, padded like {@link #base(int)}.
+     */
+    int[] check(int maxLabel) {
+        int length = length(maxLabel);
+        int[] copy = Arrays.copyOf(check, length);
+        if (length > check.length) {
+            Arrays.fill(copy, check.length, length, EMPTY);
+        }
+        return copy;
+    }
+
+    int size() {
+        return size;
+    }
+
+    private int length(int maxLabel) {
+        return Math.max(size, maxBase + maxLabel + 1);
+    }
+
+    private void ensure(int capacity) {
+        if (capacity <= check.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, check.length + (check.length >> 1));
+        int oldCapacity = check.length;
+        base = Arrays.copyOf(base, newCapacity);
+        check = Arrays.copyOf(check, newCapacity);
+        Arrays.fill(check, oldCapacity, newCapacity, EMPTY);
+    }
+}
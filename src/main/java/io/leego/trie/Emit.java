@@ -13,11 +13,27 @@ public class Emit implements Serializable {
     /** The ending index, exclusive. */
     private final int end;
     private final String keyword;
+    /** The id of the keyword, {@code -1} if unknown. */
+    private final int id;
+    private final Object payload;
+    /** The edit distance between the keyword and the matched text, {@code 0} for an exact match. */
+    private final int distance;
 
     public Emit(int begin, int end, String keyword) {
+        this(begin, end, keyword, -1, null);
+    }
+
+    public Emit(int begin, int end, String keyword, int id, Object payload) {
+        this(begin, end, keyword, id, payload, 0);
+    }
+
+    public Emit(int begin, int end, String keyword, int id, Object payload, int distance) {
         this.begin = begin;
         this.end = end;
         this.keyword = keyword;
+        this.id = id;
+        this.payload = payload;
+        this.distance = distance;
     }
 
     public int getBegin() {
@@ -36,6 +52,31 @@ public class Emit implements Serializable {
         return keyword;
     }
 
+    /**
+     * Returns the id of the keyword, which is assigned by the {@link Trie} when the keyword is added,
+     * {@code -1} if unknown.
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Returns the payload attached to the keyword, {@code null} if none.
+     */
+    @SuppressWarnings("unchecked")
+    public <V> V getPayload() {
+        return (V) payload;
+    }
+
+    /**
+     * Returns the edit distance between the keyword and the matched text, {@code 0} for an exact match.
+     *
+     * @see Trie#findAllFuzzy(CharSequence, boolean, int)
+     */
+    public int getDistance() {
+        return distance;
+    }
+
     public boolean overlaps(Emit o) {
         return this.begin < o.end && this.end > o.begin;
     }
@@ -63,6 +104,6 @@ public class Emit implements Serializable {
 
     @Override
     public String toString() {
-        return begin + ":" + end + "=" + keyword;
+        return distance == 0 ? begin + ":" + end + "=" + keyword : begin + ":" + end + "~" + distance + "=" + keyword;
     }
 }
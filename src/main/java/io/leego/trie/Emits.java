@@ -1,8 +1,6 @@
 package io.leego.trie;
 
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Iterator;
 import java.util.List;
 import java.util.function.BiPredicate;
 
@@ -50,27 +48,30 @@ public class Emits extends ArrayList<Emit> {
         return tokens;
     }
 
+    /**
+     * Replaces the chars covered by the emits with the replacement, the char at index {@code i}
+     * is replaced with the char at {@code i % replacement.length()}, an empty replacement is {@code "*"}.
+     * The chars are appended to a single builder.
+     */
     public String replaceWith(String replacement) {
+        if (replacement == null || replacement.isEmpty()) {
+            replacement = "*";
+        }
         Emits emits = this.copy();
         emits.removeContains();
-        String source = emits.getSource().toString();
-        if (emits.isEmpty()) {
-            return source;
-        }
+        int len = replacement.length();
+        StringBuilder sb = new StringBuilder(source.length());
         int index = 0;
-        StringBuilder sb = new StringBuilder();
-        for (Emit emit : this) {
+        for (Emit emit : emits) {
             if (index < emit.getBegin()) {
                 sb.append(source, index, emit.getBegin());
                 index = emit.getBegin();
             }
-            sb.append(mask(replacement, index, emit.getEnd()));
-            index = emit.getEnd();
-        }
-        Emit last = emits.get(emits.size() - 1);
-        if (last.getEnd() < source.length()) {
-            sb.append(source, last.getEnd(), source.length());
+            for (; index < emit.getEnd(); index++) {
+                sb.append(replacement.charAt(index % len));
+            }
         }
+        sb.append(source, index, source.length());
         return sb.toString();
     }
 
@@ -82,21 +83,25 @@ public class Emits extends ArrayList<Emit> {
         removeIf(Emit::contains);
     }
 
+    /**
+     * Sorts the emits and removes each one matching the predicate with the last kept one,
+     * the kept emits are moved forward in place, so it takes linear time after sorting.
+     */
     private void removeIf(BiPredicate<Emit, Emit> predicate) {
         if (this.size() <= 1) {
             return;
         }
         this.sort();
-        Iterator<Emit> iterator = this.iterator();
-        Emit emit = iterator.next();
-        while (iterator.hasNext()) {
-            Emit next = iterator.next();
-            if (predicate.test(emit, next)) {
-                iterator.remove();
-            } else {
+        Emit emit = this.get(0);
+        int n = 1;
+        for (int i = 1, size = this.size(); i < size; i++) {
+            Emit next = this.get(i);
+            if (!predicate.test(emit, next)) {
+                this.set(n++, next);
                 emit = next;
             }
         }
+        this.removeRange(n, this.size());
     }
 
     private void sort() {
@@ -109,52 +114,6 @@ public class Emits extends ArrayList<Emit> {
         });
     }
 
-    private String mask(String replacement, int begin, int end) {
-        int count = end - begin;
-        int len = replacement != null ? replacement.length() : 0;
-        if (len == 0) {
-            return repeat("*", count);
-        } else if (len == 1) {
-            return repeat(replacement, count);
-        } else {
-            char[] chars = new char[count];
-            for (int i = 0; i < count; i++) {
-                chars[i] = replacement.charAt((i + begin) % len);
-            }
-            return new String(chars);
-        }
-    }
-
-    private String repeat(String s, int count) {
-        if (count < 0) {
-            throw new IllegalArgumentException("count is negative: " + count);
-        }
-        if (count == 1) {
-            return s;
-        }
-        final int len = s.length();
-        if (len == 0 || count == 0) {
-            return "";
-        }
-        if (Integer.MAX_VALUE / count < len) {
-            throw new OutOfMemoryError("Required length exceeds implementation limit");
-        }
-        if (len == 1) {
-            final char[] single = new char[count];
-            Arrays.fill(single, s.charAt(0));
-            return new String(single);
-        }
-        final int limit = len * count;
-        final char[] multiple = new char[limit];
-        System.arraycopy(s.toCharArray(), 0, multiple, 0, len);
-        int copied = len;
-        for (; copied < limit - copied; copied <<= 1) {
-            System.arraycopy(multiple, 0, multiple, copied, copied);
-        }
-        System.arraycopy(multiple, 0, multiple, copied, limit - copied);
-        return new String(multiple);
-    }
-
     private Emits copy() {
         return new Emits(this);
     }
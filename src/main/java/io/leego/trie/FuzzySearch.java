@@ -0,0 +1,248 @@
+package io.leego.trie;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Finds the keywords within an edit distance of any substring of a text, by a depth-first traversal
+ * of the {@link State} graph. Each state holds a column of the Levenshtein distances between its prefix
+ * and the best substring ending at each index, computed from the column of its parent, and the subtrees
+ * whose columns exceed the maximum distance are pruned.
+ * <p>
+ * The columns are sparse: a column only stores the cells below its default distance, which is the depth
+ * of the state (every char of the prefix edited) capped at the maximum distance plus one. A cell can only
+ * be stored next to a stored cell of the parent, or where the text has the char of the state, so the cost
+ * of a state is proportional to its stored cells rather than to the length of the text.
+ *
+ * @author Leego Yih
+ * @see Trie#findAllFuzzy(CharSequence, boolean, int)
+ */
+final class FuzzySearch {
+    private final char[] chars;
+    /** The chars with the case swapped, {@code null} if the case is not ignored. */
+    private final char[] swapped;
+    private final int maxDistance;
+    private final Object[] payloads;
+    private final Emits emits;
+    /**
+     * The ending indexes of the chars, and of the swapped chars if they differ,
+     * sorted by char and then by index, as {@code char << 32 | end}.
+     */
+    private final long[] index;
+    /** The columns of the states on the current path, indexed by depth. */
+    private final List<Column> columns = new ArrayList<>();
+    /** The best cell of each beginning index while a column is emitted, {@code -1} if none. */
+    private final int[] bestCells;
+    /** The beginning indexes which have a best cell. */
+    private final IntList touched = new IntList(16);
+
+    FuzzySearch(char[] chars, char[] swapped, int maxDistance, Object[] payloads, Emits emits) {
+        this.chars = chars;
+        this.swapped = swapped;
+        this.maxDistance = maxDistance;
+        this.payloads = payloads;
+        this.emits = emits;
+        this.index = index(chars, swapped);
+        this.bestCells = new int[chars.length + 1];
+        Arrays.fill(bestCells, -1);
+    }
+
+    void search(State root) {
+        // The empty prefix matches the empty substring anywhere.
+        column(0).clear(0, 0);
+        root.forEachSuccess((c, state) -> search(c, state, 1));
+    }
+
+    private void search(char c, State state, int depth) {
+        int n = chars.length;
+        Column parent = columns.get(depth - 1);
+        Column column = column(depth);
+        int defaultDistance = Math.min(depth, maxDistance + 1);
+        column.clear(depth, defaultDistance);
+        int[] ends = parent.ends;
+        int size = parent.size;
+        // The candidates are merged from the ends of the stored cells of the parent, the ends which follow them,
+        // the ends of the chars matching the state, and the end reached by an insertion from the last stored cell.
+        int from = 0, following = 0, match = 0, matchEnd = 0, chain = 0;
+        if (parent.defaultDistance < defaultDistance) {
+            match = lowerBound(index, (long) c << 32);
+            matchEnd = lowerBound(index, (long) (c + 1) << 32);
+        }
+        for (int q = 0; ; ) {
+            int j = Integer.MAX_VALUE;
+            if (from < size) {
+                j = ends[from];
+            }
+            if (following < size && ends[following] + 1 < j) {
+                j = ends[following] + 1;
+            }
+            if (match < matchEnd && (int) index[match] < j) {
+                j = (int) index[match];
+            }
+            if (chain > 0 && chain < j) {
+                j = chain;
+            }
+            if (j > n) {
+                break;
+            }
+            while (from < size && ends[from] <= j) {
+                from++;
+            }
+            while (following < size && ends[following] + 1 <= j) {
+                following++;
+            }
+            while (match < matchEnd && (int) index[match] <= j) {
+                match++;
+            }
+            chain = 0;
+            if (j == 0) {
+                continue;
+            }
+            int i = j - 1;
+            while (q < size && ends[q] < i) {
+                q++;
+            }
+            boolean matched = chars[i] == c || swapped != null && swapped[i] == c;
+            // Prefer a substitution, then a deletion from the keyword, then an insertion into it.
+            int d, b;
+            if (q < size && ends[q] == i) {
+                d = parent.distances[q] + (matched ? 0 : 1);
+                b = parent.begins[q];
+            } else {
+                d = parent.defaultDistance + (matched ? 0 : 1);
+                b = parent.defaultBegin(i);
+            }
+            int r = q < size && ends[q] == i ? q + 1 : q;
+            int deletion = r < size && ends[r] == j ? parent.distances[r] + 1 : parent.defaultDistance + 1;
+            if (deletion < d) {
+                d = deletion;
+                b = r < size && ends[r] == j ? parent.begins[r] : parent.defaultBegin(j);
+            }
+            int last = column.size - 1;
+            if (last >= 0 && column.ends[last] == i && column.distances[last] + 1 < d) {
+                d = column.distances[last] + 1;
+                b = column.begins[last];
+            }
+            if (d < defaultDistance) {
+                column.add(j, d, b);
+                if (d + 1 < defaultDistance) {
+                    chain = j + 1;
+                }
+            }
+        }
+        if (column.size == 0 && defaultDistance > maxDistance) {
+            return;
+        }
+        if (state.hasKeyword()) {
+            emit(state, column);
+        }
+        state.forEachSuccess((next, child) -> search(next, child, depth + 1));
+    }
+
+    /**
+     * Adds the best end of each beginning index, the one with the smallest distance, then the nearest one,
+     * so that an occurrence is reported once rather than at each neighbouring end, and the adjacent
+     * occurrences, which begin at different indexes, are all reported.
+     * A keyword is not reported if all its chars are edited.
+     */
+    private void emit(State state, Column column) {
+        String keyword = state.getKeyword();
+        touched.clear();
+        for (int t = 0; t < column.size; t++) {
+            int d = column.distances[t];
+            int b = column.begins[t];
+            if (d > maxDistance || d >= keyword.length() || b >= column.ends[t]) {
+                continue;
+            }
+            // The cells are in ascending order of the end, so a later one only wins with a smaller distance.
+            int best = bestCells[b];
+            if (best < 0) {
+                touched.add(b);
+                bestCells[b] = t;
+            } else if (d < column.distances[best]) {
+                bestCells[b] = t;
+            }
+        }
+        for (int i = 0; i < touched.size(); i++) {
+            int b = touched.get(i);
+            int t = bestCells[b];
+            bestCells[b] = -1;
+            emits.add(new Emit(b, column.ends[t], keyword, state.getId(), payloads[state.getId()], column.distances[t]));
+        }
+    }
+
+    private static int lowerBound(long[] a, long key) {
+        int low = 0, high = a.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (a[mid] < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static long[] index(char[] chars, char[] swapped) {
+        long[] index = new long[swapped != null ? chars.length * 2 : chars.length];
+        int size = 0;
+        for (int i = 0; i < chars.length; i++) {
+            index[size++] = (long) chars[i] << 32 | (i + 1);
+            if (swapped != null && swapped[i] != chars[i]) {
+                index[size++] = (long) swapped[i] << 32 | (i + 1);
+            }
+        }
+        Arrays.sort(index, 0, size);
+        return size < index.length ? Arrays.copyOf(index, size) : index;
+    }
+
+    private Column column(int depth) {
+        if (columns.size() == depth) {
+            columns.add(new Column());
+        }
+        return columns.get(depth);
+    }
+
+    /**
+     * The stored cells of a column in ascending order of the ending index,
+     * the other cells have the default distance.
+     */
+    private static final class Column {
+        int[] ends = new int[16];
+        int[] distances = new int[16];
+        int[] begins = new int[16];
+        int size;
+        int depth;
+        int defaultDistance;
+
+        void clear(int depth, int defaultDistance) {
+            this.size = 0;
+            this.depth = depth;
+            this.defaultDistance = defaultDistance;
+        }
+
+        void add(int end, int distance, int begin) {
+            if (size == ends.length) {
+                ends = Arrays.copyOf(ends, size << 1);
+                distances = Arrays.copyOf(distances, size << 1);
+                begins = Arrays.copyOf(begins, size << 1);
+            }
+            ends[size] = end;
+            distances[size] = distance;
+            begins[size] = begin;
+            size++;
+        }
+
+        /**
+         * Returns the beginning index of a cell which is not stored. Within the maximum distance, its distance
+         * is the depth, and the substitutions are preferred, so each char of the prefix replaces a char before
+         * the end, if any.
+         */
+        int defaultBegin(int end) {
+            return Math.max(0, end - depth);
+        }
+
+    }
+}
@@ -0,0 +1,54 @@
+package io.leego.trie;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * A growable list of primitive {@code int}s.
+ *
+ * @author Leego Yih
+ */
+final class IntList implements Serializable {
+    private static final long serialVersionUID = 3614380236105563962L;
+    private int[] elements;
+    private int size;
+
+    IntList(int capacity) {
+        this.elements = new int[Math.max(capacity, 4)];
+    }
+
+    void add(int e) {
+        if (size == elements.length) {
+            elements = Arrays.copyOf(elements, size + (size >> 1) + 1);
+        }
+        elements[size++] = e;
+    }
+
+    int get(int index) {
+        return elements[index];
+    }
+
+    void set(int index, int e) {
+        elements[index] = e;
+    }
+
+    int removeLast() {
+        return elements[--size];
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    int[] toArray() {
+        return Arrays.copyOf(elements, size);
+    }
+}
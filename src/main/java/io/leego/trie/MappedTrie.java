@@ -0,0 +1,330 @@
+package io.leego.trie;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A compiled trie which is searched directly against a buffer in the binary format
+ * written by {@link CompiledTrie#writeTo(java.io.OutputStream)}, without deserialization.
+ * Opening a file maps it into memory, so several processes share the same page cache
+ * for the same dictionary, and the startup takes milliseconds. The emits report the keyword ids
+ * of the compiled trie, the payloads are not stored in the file.
+ * <p>
+ * The format is little-endian, every section is aligned to 4 bytes:
+ * <pre>
+ * int     magic             "T4JC"
+ * int     version           2
+ * int     flags             0, reserved
+ * int     codes length
+ * int     fold codes length
+ * int     slots             the length of the base, check, fail and output sections
+ * int     outputs length
+ * int     keywords          the number of keyword ids, including the ids not in use
+ * int     keyword chars     the total length of the keywords
+ * int     surrogates        the number of supplementary code points changed by the normalizer, since version 2
+ * int[]   codes
+ * int[]   fold codes
+ * int[]   base
+ * int[]   check
+ * int[]   fail
+ * int[]   output
+ * int[]   outputs
+ * int[]   surrogates        the supplementary code points changed by the normalizer, in ascending order
+ * int[]   surrogate lows    the normalized low surrogate of each code point
+ * int[]   keyword offsets   the offset of each keyword in the keyword chars, followed by the total length
+ * char[]  keyword chars
+ * </pre>
+ *
+ * @author Leego Yih
+ */
+public class MappedTrie {
+    static final int MAGIC = 0x54344A43;
+    static final int VERSION = 2;
+    static final int HEADER_INTS = 10;
+    /** The number of header ints of version 1, which has no surrogate sections. */
+    private static final int HEADER_INTS_V1 = 9;
+    static final ByteOrder ORDER = ByteOrder.LITTLE_ENDIAN;
+    private static final int ROOT = DoubleArrayBuilder.ROOT;
+    private final IntBuffer codes;
+    private final IntBuffer foldCodes;
+    private final IntBuffer base;
+    private final IntBuffer check;
+    private final IntBuffer fail;
+    private final IntBuffer output;
+    private final IntBuffer outputs;
+    /** The supplementary code points changed by the normalizer, in ascending order. */
+    private final IntBuffer surrogateCodePoints;
+    /** The normalized low surrogate of each code point of {@link #surrogateCodePoints}. */
+    private final IntBuffer surrogateLows;
+    private final int surrogateCount;
+    private final IntBuffer keywordOffsets;
+    private final CharBuffer keywordChars;
+    private final int codesLength;
+    private final int foldCodesLength;
+    /** The number of keyword ids, including the ids not in use. */
+    private final int ids;
+    /** The number of keywords. */
+    private final int size;
+
+    /**
+     * Creates a trie backed by the given buffer, which must not be changed afterwards.
+     *
+     * @param buffer the buffer in the binary format, from its position to its limit
+     * @throws IllegalArgumentException if the buffer is not in a supported format
+     */
+    public MappedTrie(ByteBuffer buffer) {
+        ByteBuffer bytes = buffer.slice().order(ORDER);
+        if (bytes.remaining() < HEADER_INTS_V1 * 4 || bytes.getInt(0) != MAGIC) {
+            throw new IllegalArgumentException("Not a compiled trie");
+        }
+        int version = bytes.getInt(4);
+        if (version != VERSION && version != 1) {
+            throw new IllegalArgumentException("Unsupported version: " + version);
+        }
+        int headerInts = version == 1 ? HEADER_INTS_V1 : HEADER_INTS;
+        if (bytes.remaining() < headerInts * 4) {
+            throw new IllegalArgumentException("Truncated compiled trie header");
+        }
+        this.codesLength = bytes.getInt(12);
+        this.foldCodesLength = bytes.getInt(16);
+        int slots = bytes.getInt(20);
+        int outputsLength = bytes.getInt(24);
+        this.ids = bytes.getInt(28);
+        int keywordCharsLength = bytes.getInt(32);
+        this.surrogateCount = version == 1 ? 0 : bytes.getInt(36);
+        if (codesLength < 0 || foldCodesLength < 0 || slots <= ROOT || outputsLength < 0 || ids < 0
+                || keywordCharsLength < 0 || surrogateCount < 0) {
+            throw new IllegalArgumentException("Corrupt compiled trie, negative section length");
+        }
+        // The lengths are summed as long, so the corrupt ones cannot overflow into a small size.
+        long expected = 4L * headerInts + 4L * codesLength + 4L * foldCodesLength + 16L * slots
+                + 4L * outputsLength + 8L * surrogateCount + 4L * ids + 4L + 2L * keywordCharsLength;
+        if (bytes.remaining() < expected) {
+            throw new IllegalArgumentException("Truncated compiled trie, expected " + expected
+                    + " bytes but was " + bytes.remaining());
+        }
+        int offset = headerInts * 4;
+        this.codes = ints(bytes, offset, codesLength);
+        offset += codesLength * 4;
+        this.foldCodes = ints(bytes, offset, foldCodesLength);
+        offset += foldCodesLength * 4;
+        this.base = ints(bytes, offset, slots);
+        offset += slots * 4;
+        this.check = ints(bytes, offset, slots);
+        offset += slots * 4;
+        this.fail = ints(bytes, offset, slots);
+        offset += slots * 4;
+        this.output = ints(bytes, offset, slots);
+        offset += slots * 4;
+        this.outputs = ints(bytes, offset, outputsLength);
+        offset += outputsLength * 4;
+        this.surrogateCodePoints = ints(bytes, offset, surrogateCount);
+        offset += surrogateCount * 4;
+        this.surrogateLows = ints(bytes, offset, surrogateCount);
+        offset += surrogateCount * 4;
+        this.keywordOffsets = ints(bytes, offset, ids + 1);
+        // The keywords are never empty, an id not in use has no chars.
+        int size = 0;
+        for (int i = 0, previous = 0; i <= ids; i++) {
+            int keywordOffset = keywordOffsets.get(i);
+            if (keywordOffset < previous || keywordOffset > keywordCharsLength) {
+                throw new IllegalArgumentException("Corrupt compiled trie, illegal keyword offset: " + keywordOffset);
+            }
+            if (keywordOffset > previous) {
+                size++;
+            }
+            previous = keywordOffset;
+        }
+        this.size = size;
+        offset += (ids + 1) * 4;
+        bytes.position(offset);
+        bytes.limit(offset + keywordCharsLength * 2);
+        this.keywordChars = bytes.slice().order(ORDER).asCharBuffer();
+    }
+
+    /**
+     * Maps the file into memory and opens it, the file must not be changed while it is in use.
+     *
+     * @param path the file written by {@link CompiledTrie#writeTo(Path)}
+     * @return the trie
+     * @throws IllegalArgumentException if the file cannot be read or is not in a supported format
+     */
+    public static MappedTrie open(Path path) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Not a compiled trie, the file is too large: " + channel.size());
+            }
+            return new MappedTrie(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    public Emits findAll(CharSequence text, boolean ignoreCase) {
+        Emits emits = new Emits(text);
+        int state = ROOT;
+        for (int i = 0, len = text.length(); i < len; i++) {
+            state = nextState(state, charAt(text, i), ignoreCase);
+            int o = output.get(state);
+            if (o < 0) {
+                continue;
+            }
+            for (int j = o + 1, end = o + outputs.get(o); j <= end; j++) {
+                int id = outputs.get(j);
+                String keyword = getKeyword(id);
+                emits.add(new Emit(i - keyword.length() + 1, i + 1, keyword, id, null));
+            }
+        }
+        return emits;
+    }
+
+    public Emits findAll(CharSequence text) {
+        return findAll(text, false);
+    }
+
+    public Emits findAllIgnoreCase(CharSequence text) {
+        return findAll(text, true);
+    }
+
+    public Emit findFirst(CharSequence text, boolean ignoreCase) {
+        int state = ROOT;
+        for (int i = 0, len = text.length(); i < len; i++) {
+            state = nextState(state, charAt(text, i), ignoreCase);
+            int o = output.get(state);
+            if (o >= 0) {
+                int id = outputs.get(o + 1);
+                String keyword = getKeyword(id);
+                return new Emit(i - keyword.length() + 1, i + 1, keyword, id, null);
+            }
+        }
+        return null;
+    }
+
+    public Emit findFirst(CharSequence text) {
+        return findFirst(text, false);
+    }
+
+    public Emit findFirstIgnoreCase(CharSequence text) {
+        return findFirst(text, true);
+    }
+
+    /**
+     * @see CompiledTrie#scan(CharSequence, boolean, MatchHandler)
+     */
+    public boolean scan(CharSequence text, boolean ignoreCase, MatchHandler handler) {
+        int state = ROOT;
+        for (int i = 0, len = text.length(); i < len; i++) {
+            state = nextState(state, charAt(text, i), ignoreCase);
+            int o = output.get(state);
+            if (o < 0) {
+                continue;
+            }
+            for (int j = o + 1, end = o + outputs.get(o); j <= end; j++) {
+                int id = outputs.get(j);
+                if (!handler.onMatch(i - getKeywordLength(id) + 1, i + 1, id)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    public boolean scan(CharSequence text, MatchHandler handler) {
+        return scan(text, false, handler);
+    }
+
+    /**
+     * Returns the keyword with the given id, a new string is created from the buffer every time.
+     *
+     * @param id the id of the keyword, from {@code 0} to {@link #getMaxId()} inclusive
+     * @return the keyword, an empty string if the id is not in use
+     */
+    public String getKeyword(int id) {
+        int begin = keywordOffsets.get(id);
+        int end = keywordOffsets.get(id + 1);
+        char[] chars = new char[end - begin];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = keywordChars.get(begin + i);
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Returns the largest keyword id, {@code -1} if there is no keyword.
+     */
+    public int getMaxId() {
+        return ids - 1;
+    }
+
+    /**
+     * Returns the number of keywords.
+     */
+    public int size() {
+        return size;
+    }
+
+    private int getKeywordLength(int id) {
+        return keywordOffsets.get(id + 1) - keywordOffsets.get(id);
+    }
+
+    /**
+     * Returns the char at the given index of the text, with the low surrogate normalized after its high surrogate.
+     */
+    private char charAt(CharSequence text, int index) {
+        char c = text.charAt(index);
+        if (surrogateCount > 0 && Character.isLowSurrogate(c) && index > 0) {
+            char high = text.charAt(index - 1);
+            if (Character.isHighSurrogate(high)) {
+                int codePoint = Character.toCodePoint(high, c);
+                int low = 0, highIndex = surrogateCount - 1;
+                while (low <= highIndex) {
+                    int mid = (low + highIndex) >>> 1;
+                    int value = surrogateCodePoints.get(mid);
+                    if (value < codePoint) {
+                        low = mid + 1;
+                    } else if (value > codePoint) {
+                        highIndex = mid - 1;
+                    } else {
+                        return (char) surrogateLows.get(mid);
+                    }
+                }
+            }
+        }
+        return c;
+    }
+
+    private int nextState(int state, char c, boolean ignoreCase) {
+        int code = c < codesLength ? codes.get(c) : 0;
+        int fold = ignoreCase && c < foldCodesLength ? foldCodes.get(c) : 0;
+        if (code == 0 && fold == 0) {
+            return ROOT;
+        }
+        for (; ; ) {
+            int b = base.get(state);
+            if (code != 0 && check.get(b + code) == state) {
+                return b + code;
+            }
+            if (fold != 0 && check.get(b + fold) == state) {
+                return b + fold;
+            }
+            if (state == ROOT) {
+                return ROOT;
+            }
+            state = fail.get(state);
+        }
+    }
+
+    private static IntBuffer ints(ByteBuffer bytes, int offset, int length) {
+        bytes.limit(offset + length * 4);
+        bytes.position(offset);
+        IntBuffer ints = bytes.slice().order(ORDER).asIntBuffer();
+        bytes.clear();
+        return ints;
+    }
+}
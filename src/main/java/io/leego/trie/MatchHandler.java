@@ -0,0 +1,20 @@
+package io.leego.trie;
+
+/**
+ * Receives the matches of a scan as primitive values, so no object is created per match.
+ *
+ * @author Leego Yih
+ * @see CompiledTrie#scan(CharSequence, MatchHandler)
+ */
+@FunctionalInterface
+public interface MatchHandler {
+    /**
+     * Handles a match.
+     *
+     * @param begin     the beginning index, inclusive
+     * @param end       the ending index, exclusive
+     * @param keywordId the id of the keyword
+     * @return {@code true} to continue the scan, {@code false} to stop it
+     */
+    boolean onMatch(int begin, int end, int keywordId);
+}
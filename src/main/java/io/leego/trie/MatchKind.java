@@ -0,0 +1,24 @@
+package io.leego.trie;
+
+/**
+ * The semantics of the matches reported by a scan.
+ *
+ * @author Leego Yih
+ * @see CompiledTrie#findAll(CharSequence, boolean, MatchKind)
+ */
+public enum MatchKind {
+    /**
+     * Reports every match, including the overlapping ones, ordered by the ending index.
+     */
+    STANDARD,
+    /**
+     * Reports non-overlapping matches from left to right, among the matches beginning at the same index,
+     * the keyword with the lowest id wins, which is the one added first unless the ids have been reused.
+     */
+    LEFTMOST_FIRST,
+    /**
+     * Reports non-overlapping matches from left to right, among the matches beginning at the same index,
+     * the longest keyword wins. The result is the same as {@link Emits#removeOverlaps()}.
+     */
+    LEFTMOST_LONGEST
+}
@@ -0,0 +1,124 @@
+package io.leego.trie;
+
+import java.util.Arrays;
+
+/**
+ * Selects the non-overlapping matches of a leftmost {@link MatchKind} while the matches of a standard scan
+ * are passed in, and forwards the selected ones in ascending order of the beginning index.
+ * <p>
+ * The matches come in ascending order of the ending index and no keyword is longer than {@code maxLength},
+ * so once a match ends at {@code end}, no later match can begin before {@code end - maxLength}. The candidates
+ * beginning before that are final and are forwarded, the others are kept, at most one per beginning index.
+ *
+ * @author Leego Yih
+ */
+final class MatchSelector implements StreamMatchHandler {
+    private final boolean longest;
+    private final int maxLength;
+    private final StreamMatchHandler handler;
+    private long[] begins = new long[8];
+    private long[] ends = new long[8];
+    private int[] ids = new int[8];
+    private int size;
+    /** The ending index of the last forwarded match, the candidates must not begin before it. */
+    private long lastEnd = Long.MIN_VALUE;
+
+    MatchSelector(MatchKind kind, int maxLength, StreamMatchHandler handler) {
+        this.longest = kind == MatchKind.LEFTMOST_LONGEST;
+        this.maxLength = maxLength;
+        this.handler = handler;
+    }
+
+    @Override
+    public boolean onMatch(long begin, long end, int keywordId) {
+        if (!commit(end - maxLength)) {
+            return false;
+        }
+        if (begin < lastEnd) {
+            return true;
+        }
+        for (int i = 0; i < size; i++) {
+            if (begins[i] == begin) {
+                if (longest ? end > ends[i] : keywordId < ids[i]) {
+                    ends[i] = end;
+                    ids[i] = keywordId;
+                }
+                return true;
+            }
+        }
+        if (size == begins.length) {
+            begins = Arrays.copyOf(begins, size << 1);
+            ends = Arrays.copyOf(ends, size << 1);
+            ids = Arrays.copyOf(ids, size << 1);
+        }
+        begins[size] = begin;
+        ends[size] = end;
+        ids[size] = keywordId;
+        size++;
+        return true;
+    }
+
+    /**
+     * Forwards the candidates which can no longer be beaten, once no later match can begin before the horizon.
+     *
+     * @return {@code false} if the handler stopped the scan
+     */
+    boolean advance(long horizon) {
+        return commit(horizon);
+    }
+
+    /**
+     * Returns the smallest beginning index of the candidates, {@link Long#MAX_VALUE} if none.
+     */
+    long pendingBegin() {
+        long begin = Long.MAX_VALUE;
+        for (int i = 0; i < size; i++) {
+            begin = Math.min(begin, begins[i]);
+        }
+        return begin;
+    }
+
+    /**
+     * Forwards the remaining candidates, must be called once the scan is completed.
+     *
+     * @return {@code false} if the handler stopped the scan
+     */
+    boolean flush() {
+        return commit(Long.MAX_VALUE);
+    }
+
+    /**
+     * Forwards the leftmost candidates beginning before the horizon, and drops the candidates overlapping them.
+     */
+    private boolean commit(long horizon) {
+        while (size > 0) {
+            int best = 0;
+            for (int i = 1; i < size; i++) {
+                if (begins[i] < begins[best]) {
+                    best = i;
+                }
+            }
+            long begin = begins[best];
+            if (begin >= horizon) {
+                return true;
+            }
+            long end = ends[best];
+            int id = ids[best];
+            lastEnd = end;
+            int n = 0;
+            for (int i = 0; i < size; i++) {
+                if (begins[i] >= end) {
+                    begins[n] = begins[i];
+                    ends[n] = ends[i];
+                    ids[n] = ids[i];
+                    n++;
+                }
+            }
+            size = n;
+            if (!handler.onMatch(begin, end, id)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,135 @@
+package io.leego.trie;
+
+/**
+ * A shared base trie combined with a small overlay of extra keywords, both are scanned in a single pass
+ * over the text. The keyword ids of the base are kept, the ids of the overlay follow the largest id of
+ * the base, so each id still identifies one keyword.
+ *
+ * @author Leego Yih
+ * @see TrieRegistry
+ */
+public class OverlayTrie {
+    private static final int ROOT = DoubleArrayBuilder.ROOT;
+    private final CompiledTrie base;
+    private final CompiledTrie overlay;
+    /** The offset of the overlay ids. */
+    private final int offset;
+
+    /**
+     * Creates a trie which scans both tries, a keyword found in both is reported twice.
+     *
+     * @param base    the base trie, which may be shared
+     * @param overlay the overlay trie
+     */
+    public OverlayTrie(CompiledTrie base, CompiledTrie overlay) {
+        this.base = base;
+        this.overlay = overlay;
+        this.offset = base.getMaxId() + 1;
+    }
+
+    /**
+     * Scans the text and passes every match to the handler. The matches are passed in ascending order of the
+     * ending index, the matches of the base first for the same ending index. Apart from the handler, nothing
+     * is allocated.
+     *
+     * @param text       the text
+     * @param ignoreCase whether to ignore case
+     * @param handler    the handler
+     * @return {@code true} if the whole text has been scanned, {@code false} if the handler stopped the scan
+     */
+    public boolean scan(CharSequence text, boolean ignoreCase, MatchHandler handler) {
+        if (overlay.size() == 0) {
+            return base.scan(text, ignoreCase, handler);
+        }
+        int b = ROOT, o = ROOT;
+        for (int i = 0, len = text.length(); i < len; i++) {
+            b = base.step(b, text, i, ignoreCase);
+            o = overlay.step(o, text, i, ignoreCase);
+            if (!base.onMatch(b, i + 1, 0, handler) || !overlay.onMatch(o, i + 1, offset, handler)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public boolean scan(CharSequence text, MatchHandler handler) {
+        return scan(text, false, handler);
+    }
+
+    public boolean scanIgnoreCase(CharSequence text, MatchHandler handler) {
+        return scan(text, true, handler);
+    }
+
+    public Emits findAll(CharSequence text, boolean ignoreCase) {
+        Emits emits = new Emits(text);
+        scan(text, ignoreCase, (begin, end, id) -> emits.add(new Emit(begin, end, getKeyword(id), id, getPayload(id))));
+        return emits;
+    }
+
+    public Emits findAll(CharSequence text) {
+        return findAll(text, false);
+    }
+
+    public Emits findAllIgnoreCase(CharSequence text) {
+        return findAll(text, true);
+    }
+
+    public Emit findFirst(CharSequence text, boolean ignoreCase) {
+        Emit[] first = new Emit[1];
+        scan(text, ignoreCase, (begin, end, id) -> {
+            first[0] = new Emit(begin, end, getKeyword(id), id, getPayload(id));
+            return false;
+        });
+        return first[0];
+    }
+
+    public Emit findFirst(CharSequence text) {
+        return findFirst(text, false);
+    }
+
+    public Emit findFirstIgnoreCase(CharSequence text) {
+        return findFirst(text, true);
+    }
+
+    /**
+     * Returns the keyword with the given id.
+     *
+     * @param id the id of the keyword, from {@code 0} to {@link #getMaxId()} inclusive
+     * @return the keyword, {@code null} if the id is not in use
+     */
+    public String getKeyword(int id) {
+        return id < offset ? base.getKeyword(id) : overlay.getKeyword(id - offset);
+    }
+
+    /**
+     * Returns the payload of the keyword with the given id.
+     *
+     * @param id the id of the keyword, from {@code 0} to {@link #getMaxId()} inclusive
+     * @return the payload, {@code null} if none
+     */
+    public <V> V getPayload(int id) {
+        return id < offset ? base.getPayload(id) : overlay.getPayload(id - offset);
+    }
+
+    /**
+     * Returns the largest keyword id, {@code -1} if there is no keyword.
+     */
+    public int getMaxId() {
+        return offset + overlay.getMaxId();
+    }
+
+    /**
+     * Returns the number of keywords.
+     */
+    public int size() {
+        return base.size() + overlay.size();
+    }
+
+    public CompiledTrie getBase() {
+        return base;
+    }
+
+    public CompiledTrie getOverlay() {
+        return overlay;
+    }
+}
@@ -0,0 +1,146 @@
+package io.leego.trie;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Builds an empty trie with a {@link ForkJoinPool}.
+ * The keywords are partitioned by prefix and each partition is inserted into its own subtrie,
+ * so the transitions of the states are never shared between threads. The chars are added to the
+ * {@link Alphabet} beforehand, so it is only read while inserting.
+ * The failures are then computed level by level, the states of a level only read the shallower levels.
+ *
+ * @author Leego Yih
+ */
+final class ParallelTrieBuilder {
+    /** The number of keywords below which a partition is inserted sequentially. */
+    private static final int PARTITION_THRESHOLD = 1024;
+    /** The number of states of a level below which their children are linked sequentially. */
+    private static final int LEVEL_THRESHOLD = 4096;
+    private final State root;
+    private final ForkJoinPool pool;
+
+    ParallelTrieBuilder(State root, ForkJoinPool pool) {
+        this.root = root;
+        this.pool = pool;
+    }
+
+    void build(Collection<String> keywords) {
+        List<String> list = new ArrayList<>(keywords.size());
+        for (String keyword : keywords) {
+            if (keyword != null && !keyword.isEmpty()) {
+                list.add(keyword);
+            }
+        }
+        if (list.isEmpty()) {
+            return;
+        }
+        Alphabet alphabet = root.getAlphabet();
+        if (alphabet != null) {
+            for (String keyword : list) {
+                for (int i = 0; i < keyword.length(); i++) {
+                    alphabet.add(keyword.charAt(i));
+                }
+            }
+        }
+        pool.invoke(new InsertTask(root, list, 0));
+        List<State> states = new ArrayList<>();
+        List<State> level = new ArrayList<>();
+        level.add(root);
+        while (!level.isEmpty()) {
+            List<State> next = pool.invoke(new LevelTask(level, 0, level.size()));
+            states.addAll(next);
+            level = next;
+        }
+        for (State state : states) {
+            state.relinkInverse();
+        }
+    }
+
+    /**
+     * Inserts the keywords sharing the prefix of the given state, whose length is the depth.
+     */
+    private static final class InsertTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final State state;
+        private final List<String> keywords;
+        private final int depth;
+
+        InsertTask(State state, List<String> keywords, int depth) {
+            this.state = state;
+            this.keywords = keywords;
+            this.depth = depth;
+        }
+
+        @Override
+        protected void compute() {
+            if (keywords.size() <= PARTITION_THRESHOLD) {
+                for (String keyword : keywords) {
+                    State s = state;
+                    for (int i = depth; i < keyword.length(); i++) {
+                        s = s.addState(keyword.charAt(i));
+                    }
+                    s.addKeyword(keyword);
+                }
+                return;
+            }
+            Map<Character, List<String>> partitions = new HashMap<>();
+            for (String keyword : keywords) {
+                if (keyword.length() == depth) {
+                    state.addKeyword(keyword);
+                } else {
+                    partitions.computeIfAbsent(keyword.charAt(depth), k -> new ArrayList<>()).add(keyword);
+                }
+            }
+            List<InsertTask> tasks = new ArrayList<>(partitions.size());
+            partitions.forEach((c, list) -> tasks.add(new InsertTask(state.addState(c), list, depth + 1)));
+            invokeAll(tasks);
+        }
+    }
+
+    /**
+     * Computes the failures of the children of a range of states of the same level,
+     * and returns the children in order.
+     */
+    private static final class LevelTask extends RecursiveTask<List<State>> {
+        private static final long serialVersionUID = 1L;
+        private final List<State> level;
+        private final int from;
+        private final int to;
+
+        LevelTask(List<State> level, int from, int to) {
+            this.level = level;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected List<State> compute() {
+            if (to - from <= LEVEL_THRESHOLD) {
+                List<State> children = new ArrayList<>();
+                for (int i = from; i < to; i++) {
+                    State parent = level.get(i);
+                    parent.forEachSuccess((c, child) -> {
+                        child.initFailure(parent.childFailure(c));
+                        children.add(child);
+                    });
+                }
+                return children;
+            }
+            int mid = (from + to) >>> 1;
+            LevelTask left = new LevelTask(level, from, mid);
+            LevelTask right = new LevelTask(level, mid, to);
+            left.fork();
+            List<State> children = right.compute();
+            List<State> result = left.join();
+            result.addAll(children);
+            return result;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package io.leego.trie;
+
+/**
+ * The positions in the original text of the last chars which have been passed to the automaton,
+ * used to map a match back to the text when some chars are skipped.
+ *
+ * @author Leego Yih
+ */
+final class PositionRing {
+    private int[] positions;
+    private int mask;
+    private int count;
+
+    PositionRing(int capacity) {
+        int size = Integer.highestOneBit(Math.max(capacity, 1));
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.positions = new int[size];
+        this.mask = size - 1;
+    }
+
+    void add(int position) {
+        positions[count++ & mask] = position;
+    }
+
+    /**
+     * Returns the position of the char the given number of chars before the last one.
+     */
+    int get(int back) {
+        return positions[(count - 1 - back) & mask];
+    }
+
+    /**
+     * Grows the ring to hold at least the given number of positions, keeping the last ones.
+     */
+    void ensureCapacity(int capacity) {
+        if (capacity <= positions.length) {
+            return;
+        }
+        int size = positions.length;
+        while (size < capacity) {
+            size <<= 1;
+        }
+        int[] grown = new int[size];
+        for (int i = Math.max(0, count - positions.length); i < count; i++) {
+            grown[i & (size - 1)] = positions[i & mask];
+        }
+        this.positions = grown;
+        this.mask = size - 1;
+    }
+}
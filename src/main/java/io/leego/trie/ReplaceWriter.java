@@ -0,0 +1,181 @@
+package io.leego.trie;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.CharBuffer;
+import java.util.Arrays;
+
+/**
+ * Writes the input with the matched regions replaced, while the matches are being passed in.
+ * The overlapping matches are merged into one region, which is replaced with the keyword
+ * matched at its beginning. The input is written as soon as no later match can cover it,
+ * so only the chars which may still be replaced are kept.
+ *
+ * @author Leego Yih
+ */
+final class ReplaceWriter implements StreamMatchHandler {
+    private final Appendable out;
+    private final Replacer replacer;
+    private final int maxLength;
+    /** The selector of a leftmost match kind, {@code null} for the standard one. */
+    private final MatchSelector selector;
+    /** The whole input, {@code null} if the input is streamed through the window. */
+    private final CharSequence text;
+    private char[] window;
+    private CharBuffer view;
+    /** The index in the input of the first char in the window. */
+    private long windowStart;
+    /** The open regions in ascending order, which do not overlap each other. */
+    private long[] begins = new long[8];
+    private long[] ends = new long[8];
+    private int[] ids = new int[8];
+    private int size;
+    /** The number of chars of the input which have been written or replaced. */
+    private long written;
+
+    ReplaceWriter(Appendable out, Replacer replacer, MatchKind kind, int maxLength, CharSequence text) {
+        this.out = out;
+        this.replacer = replacer;
+        this.maxLength = maxLength;
+        this.selector = kind != MatchKind.STANDARD ? new MatchSelector(kind, maxLength, this) : null;
+        this.text = text;
+    }
+
+    /**
+     * Returns the handler which the matches of a standard scan are passed to.
+     */
+    StreamMatchHandler getHandler() {
+        return selector != null ? selector : this;
+    }
+
+    /**
+     * Sets the window holding the chars of the streamed input from the given index.
+     */
+    void setWindow(char[] window, long windowStart) {
+        if (this.window != window) {
+            this.window = window;
+            this.view = CharBuffer.wrap(window);
+        }
+        this.windowStart = windowStart;
+    }
+
+    /**
+     * Returns the index of the first char of the input which has not been written yet.
+     */
+    long getWritten() {
+        return written;
+    }
+
+    @Override
+    public boolean onMatch(long begin, long end, int keywordId) {
+        // A selected match is final, while a later standard match may begin maxLength before its end.
+        write(selector != null ? begin : end - maxLength);
+        add(begin, end, keywordId);
+        return true;
+    }
+
+    /**
+     * Writes what can no longer be covered by a match once the chars before the given index have been scanned.
+     */
+    void advance(long position) {
+        long horizon = Math.min(position, position + 1 - maxLength);
+        if (selector != null) {
+            selector.advance(horizon);
+            horizon = Math.min(horizon, selector.pendingBegin());
+        }
+        write(horizon);
+    }
+
+    /**
+     * Writes the rest of the input, which has the given length.
+     */
+    void finish(long length) {
+        if (selector != null) {
+            selector.flush();
+        }
+        write(length);
+    }
+
+    private void add(long begin, long end, int keywordId) {
+        // Merges the open regions overlapping the new one.
+        int first = 0;
+        while (first < size && ends[first] <= begin) {
+            first++;
+        }
+        int last = first;
+        while (last < size && begins[last] < end) {
+            last++;
+        }
+        if (first < last) {
+            if (begins[first] <= begin) {
+                begin = begins[first];
+                keywordId = ids[first];
+            }
+            end = Math.max(end, ends[last - 1]);
+            System.arraycopy(begins, last, begins, first + 1, size - last);
+            System.arraycopy(ends, last, ends, first + 1, size - last);
+            System.arraycopy(ids, last, ids, first + 1, size - last);
+            size -= last - first - 1;
+        } else {
+            if (size == begins.length) {
+                begins = Arrays.copyOf(begins, size << 1);
+                ends = Arrays.copyOf(ends, size << 1);
+                ids = Arrays.copyOf(ids, size << 1);
+            }
+            System.arraycopy(begins, first, begins, first + 1, size - first);
+            System.arraycopy(ends, first, ends, first + 1, size - first);
+            System.arraycopy(ids, first, ids, first + 1, size - first);
+            size++;
+        }
+        begins[first] = begin;
+        ends[first] = end;
+        ids[first] = keywordId;
+    }
+
+    /**
+     * Writes the regions ending before the horizon, and the chars before the horizon outside the open regions.
+     */
+    private void write(long horizon) {
+        try {
+            int n = 0;
+            while (n < size && ends[n] <= horizon) {
+                append(written, begins[n]);
+                replacer.replace(out, begins[n], ends[n], ids[n]);
+                written = ends[n];
+                n++;
+            }
+            if (n > 0) {
+                size -= n;
+                System.arraycopy(begins, n, begins, 0, size);
+                System.arraycopy(ends, n, ends, 0, size);
+                System.arraycopy(ids, n, ids, 0, size);
+            }
+            long limit = size > 0 ? Math.min(horizon, begins[0]) : horizon;
+            if (limit > written) {
+                append(written, limit);
+                written = limit;
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    private void append(long from, long to) throws IOException {
+        if (from >= to) {
+            return;
+        }
+        if (text != null) {
+            out.append(text, (int) from, (int) to);
+            return;
+        }
+        int offset = (int) (from - windowStart);
+        int len = (int) (to - from);
+        if (out instanceof StringBuilder) {
+            ((StringBuilder) out).append(window, offset, len);
+        } else if (out instanceof Writer) {
+            ((Writer) out).write(window, offset, len);
+        } else {
+            out.append(view, offset, offset + len);
+        }
+    }
+}
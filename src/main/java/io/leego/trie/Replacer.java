@@ -0,0 +1,74 @@
+package io.leego.trie;
+
+import java.io.IOException;
+import java.util.function.IntFunction;
+
+/**
+ * Writes the replacement of a matched region while a text is being replaced,
+ * the replacement is appended to the output directly, without creating a string.
+ *
+ * @author Leego Yih
+ * @see CompiledTrie#replace(CharSequence, boolean, MatchKind, Replacer, Appendable)
+ */
+@FunctionalInterface
+public interface Replacer {
+    /**
+     * Appends the replacement of the region.
+     *
+     * @param out       the output
+     * @param begin     the beginning index of the region in the whole input, inclusive
+     * @param end       the ending index of the region in the whole input, exclusive
+     * @param keywordId the id of the keyword matched at the beginning of the region
+     * @throws IOException if the output cannot be written
+     */
+    void replace(Appendable out, long begin, long end, int keywordId) throws IOException;
+
+    /**
+     * Returns a replacer which replaces each char of the region with the given char.
+     */
+    static Replacer mask(char c) {
+        return (out, begin, end, keywordId) -> {
+            for (long i = begin; i < end; i++) {
+                out.append(c);
+            }
+        };
+    }
+
+    /**
+     * Returns a replacer which replaces the char at index {@code i} with the char at {@code i % mask.length()}
+     * of the mask, so the output does not depend on how the regions are split, like {@link Emits#replaceWith(String)}.
+     * An empty or {@code null} mask is {@code "*"}.
+     */
+    static Replacer mask(String mask) {
+        if (mask == null || mask.isEmpty()) {
+            return mask('*');
+        } else if (mask.length() == 1) {
+            return mask(mask.charAt(0));
+        }
+        int len = mask.length();
+        return (out, begin, end, keywordId) -> {
+            int j = (int) (begin % len);
+            for (long i = begin; i < end; i++) {
+                out.append(mask.charAt(j));
+                if (++j == len) {
+                    j = 0;
+                }
+            }
+        };
+    }
+
+    /**
+     * Returns a replacer which replaces each region with the replacement of its keyword,
+     * a {@code null} replacement removes the region.
+     *
+     * @param replacements the function from the keyword id to the replacement
+     */
+    static Replacer with(IntFunction<? extends CharSequence> replacements) {
+        return (out, begin, end, keywordId) -> {
+            CharSequence replacement = replacements.apply(keywordId);
+            if (replacement != null) {
+                out.append(replacement);
+            }
+        };
+    }
+}
@@ -0,0 +1,147 @@
+package io.leego.trie;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded cache of search results for the repeated texts, used by {@link ConcurrentTrie#withCache(ResultCache)}.
+ * <p>
+ * The cache is direct-mapped: each text goes to the slot of its hash, and replaces whatever was there. An entry
+ * holds the text, the version of the dictionary it was found against, and the matches as an {@code int[]}, so
+ * the entries of an older version are never returned. The slots are replaced without locking, and a hit is
+ * verified against the stored text, so a colliding text is a miss rather than a wrong result.
+ * Only the {@link String}s up to the maximum length are cached, the other texts may be changed by the caller.
+ *
+ * @author Leego Yih
+ */
+public class ResultCache {
+    /** The default maximum length of the cached texts. */
+    public static final int DEFAULT_MAX_TEXT_LENGTH = 256;
+    static final int FIND_ALL = 0;
+    static final int FIND_FIRST = 1;
+    private final AtomicReferenceArray<Entry> entries;
+    private final int mask;
+    private final int maxTextLength;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Creates a cache of the texts up to {@link #DEFAULT_MAX_TEXT_LENGTH} long.
+     *
+     * @param capacity the number of slots, rounded up to a power of two
+     */
+    public ResultCache(int capacity) {
+        this(capacity, DEFAULT_MAX_TEXT_LENGTH);
+    }
+
+    /**
+     * Creates a cache.
+     *
+     * @param capacity      the number of slots, rounded up to a power of two
+     * @param maxTextLength the maximum length of the cached texts
+     */
+    public ResultCache(int capacity, int maxTextLength) {
+        if (capacity <= 0 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Illegal capacity: " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.entries = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+        this.maxTextLength = maxTextLength;
+    }
+
+    /**
+     * Returns whether the text can be cached.
+     */
+    boolean accepts(CharSequence text) {
+        return text instanceof String && text.length() <= maxTextLength;
+    }
+
+    /**
+     * Returns the cached matches as {@code (begin, end, keywordId)} triples, {@code null} if absent.
+     */
+    int[] get(String text, int kind, boolean ignoreCase, long version) {
+        Entry entry = entries.get(index(text, kind, ignoreCase));
+        if (entry != null && entry.version == version && entry.kind == kind
+                && entry.ignoreCase == ignoreCase && entry.text.equals(text)) {
+            hits.increment();
+            return entry.matches;
+        }
+        misses.increment();
+        return null;
+    }
+
+    void put(String text, int kind, boolean ignoreCase, long version, int[] matches) {
+        entries.set(index(text, kind, ignoreCase), new Entry(text, kind, ignoreCase, version, matches));
+    }
+
+    private int index(String text, int kind, boolean ignoreCase) {
+        int h = text.hashCode() * 31 + (kind << 1 | (ignoreCase ? 1 : 0));
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    /**
+     * Removes all the entries.
+     */
+    public void clear() {
+        for (int i = 0; i < entries.length(); i++) {
+            entries.set(i, null);
+        }
+    }
+
+    /**
+     * Returns the number of slots.
+     */
+    public int capacity() {
+        return entries.length();
+    }
+
+    public int getMaxTextLength() {
+        return maxTextLength;
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Returns the ratio of the lookups which have been hits, {@code 0} if none.
+     */
+    public double getHitRate() {
+        long hits = this.hits.sum();
+        long lookups = hits + misses.sum();
+        return lookups != 0 ? (double) hits / lookups : 0;
+    }
+
+    /**
+     * Resets the statistics.
+     */
+    public void resetStats() {
+        hits.reset();
+        misses.reset();
+    }
+
+    private static final class Entry {
+        final String text;
+        final int kind;
+        final boolean ignoreCase;
+        final long version;
+        /** The {@code (begin, end, keywordId)} triples. */
+        final int[] matches;
+
+        Entry(String text, int kind, boolean ignoreCase, long version, int[] matches) {
+            this.text = text;
+            this.kind = kind;
+            this.ignoreCase = ignoreCase;
+            this.version = version;
+            this.matches = matches;
+        }
+    }
+}
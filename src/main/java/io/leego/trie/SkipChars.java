@@ -0,0 +1,130 @@
+package io.leego.trie;
+
+import java.io.Serializable;
+
+/**
+ * A set of chars which are ignored between the chars of a keyword, so that an obfuscated keyword such as
+ * {@code "b.a.d"}, or one with zero-width spaces between its chars, still matches {@code "bad"}.
+ * At most {@link #getMaxGap()} consecutive skip chars are ignored, a longer run breaks the match.
+ * The match covers the obfuscated span of the text, from the first char of the keyword to the last one.
+ * <p>
+ * The skip chars are tested against the original text, before any normalization, and the keywords
+ * containing skip chars never match in this mode.
+ *
+ * @author Leego Yih
+ * @see CompiledTrie#findAll(CharSequence, boolean, SkipChars)
+ */
+public final class SkipChars implements Serializable {
+    private static final long serialVersionUID = 2047158436519052874L;
+    /** The default maximum number of consecutive skip chars. */
+    public static final int DEFAULT_MAX_GAP = 3;
+    private final long[] bits;
+    private final int maxGap;
+
+    private SkipChars(long[] bits, int maxGap) {
+        this.bits = bits;
+        this.maxGap = maxGap;
+    }
+
+    /**
+     * Returns the set of the given chars.
+     */
+    public static SkipChars of(CharSequence chars) {
+        long[] bits = new long[(Character.MAX_VALUE + 1) >>> 6];
+        for (int i = 0; i < chars.length(); i++) {
+            char c = chars.charAt(i);
+            bits[c >>> 6] |= 1L << c;
+        }
+        return new SkipChars(bits, DEFAULT_MAX_GAP);
+    }
+
+    /**
+     * Returns the set of the whitespace and space separator chars.
+     */
+    public static SkipChars whitespace() {
+        long[] bits = new long[(Character.MAX_VALUE + 1) >>> 6];
+        for (int c = 0; c <= Character.MAX_VALUE; c++) {
+            if (Character.isWhitespace(c) || Character.isSpaceChar(c)) {
+                bits[c >>> 6] |= 1L << c;
+            }
+        }
+        return new SkipChars(bits, DEFAULT_MAX_GAP);
+    }
+
+    /**
+     * Returns the set of the punctuation chars of the Unicode general categories {@code P*},
+     * and of the ASCII symbols such as {@code '*'} and {@code '~'}.
+     */
+    public static SkipChars punctuation() {
+        long[] bits = new long[(Character.MAX_VALUE + 1) >>> 6];
+        for (int c = 0; c <= Character.MAX_VALUE; c++) {
+            if (isPunctuation(c) || c < 0x80 && Character.getType(c) >= Character.MATH_SYMBOL
+                    && Character.getType(c) <= Character.OTHER_SYMBOL) {
+                bits[c >>> 6] |= 1L << c;
+            }
+        }
+        return new SkipChars(bits, DEFAULT_MAX_GAP);
+    }
+
+    /**
+     * Returns the set of the invisible chars: the zero-width space, non-joiner and joiner, the word joiner,
+     * the byte order mark and the soft hyphen.
+     */
+    public static SkipChars zeroWidth() {
+        return of("\u200B\u200C\u200D\u2060\uFEFF\u00AD");
+    }
+
+    /**
+     * Returns the union of {@link #whitespace()}, {@link #punctuation()} and {@link #zeroWidth()}.
+     */
+    public static SkipChars defaults() {
+        return whitespace().and(punctuation()).and(zeroWidth());
+    }
+
+    /**
+     * Returns the union of this set and the given one, with the maximum gap of this set.
+     */
+    public SkipChars and(SkipChars other) {
+        long[] bits = this.bits.clone();
+        for (int i = 0; i < bits.length; i++) {
+            bits[i] |= other.bits[i];
+        }
+        return new SkipChars(bits, maxGap);
+    }
+
+    /**
+     * Returns a copy of this set with the given maximum number of consecutive skip chars.
+     *
+     * @param maxGap the maximum number of consecutive skip chars, at least {@code 1}
+     * @return the copy
+     */
+    public SkipChars withMaxGap(int maxGap) {
+        if (maxGap < 1) {
+            throw new IllegalArgumentException("Illegal max gap: " + maxGap);
+        }
+        return new SkipChars(bits, maxGap);
+    }
+
+    public boolean contains(char c) {
+        return (bits[c >>> 6] & (1L << c)) != 0;
+    }
+
+    public int getMaxGap() {
+        return maxGap;
+    }
+
+    private static boolean isPunctuation(int c) {
+        switch (Character.getType(c)) {
+            case Character.CONNECTOR_PUNCTUATION:
+            case Character.DASH_PUNCTUATION:
+            case Character.START_PUNCTUATION:
+            case Character.END_PUNCTUATION:
+            case Character.INITIAL_QUOTE_PUNCTUATION:
+            case Character.FINAL_QUOTE_PUNCTUATION:
+            case Character.OTHER_PUNCTUATION:
+                return true;
+            default:
+                return false;
+        }
+    }
+}
@@ -1,25 +1,68 @@
 package io.leego.trie;
 
 import java.io.Serializable;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
-import java.util.TreeSet;
 
 /**
+ * The transitions of each state are stored in the most compact form for its fanout:
+ * a single inline edge, a sorted {@code char[]} searched by binary search,
+ * or a table indexed directly by the {@link Alphabet} of the trie, which the root always uses.
+ *
  * @author Leego Yih
  */
 public class State implements Serializable {
-    private static final long serialVersionUID = -6350361756888572415L;
+    private static final long serialVersionUID = 3870418262951730614L;
+    /** The minimum number of transitions of a state which is indexed by the alphabet. */
+    private static final int DENSE_MIN_COUNT = 8;
+    /** A state is indexed by the alphabet once its transitions fill a quarter of the alphabet. */
+    private static final int DENSE_RATIO = 4;
     private final int depth;
-    private Map<Character, State> success;
+    /** The alphabet of the trie, {@code null} if the state is never indexed by the alphabet. */
+    private final Alphabet alphabet;
+    /** The number of transitions. */
+    private int count;
+    /** The char and the state of the single transition, if neither {@link #labels} nor {@link #table} is used. */
+    private char label;
+    private State child;
+    /** The sorted chars and the states of the transitions. */
+    private char[] labels;
+    private State[] children;
+    /** The states indexed by the alphabet indices of their chars. */
+    private State[] table;
     private State failure;
-    private TreeSet<String> keywords;
+    /** The keyword ending at this state, {@code null} if none. */
+    private String keyword;
+    /** The id of the keyword, {@code -1} if none. */
+    private int id = -1;
+    /** The nearest state on the failure chain that has a keyword, {@code null} if none. */
+    private State output;
+    /** The first state whose failure is this state. */
+    private transient State inverse;
+    /** The previous and next states which share the same failure. */
+    private transient State inversePrev, inverseNext;
 
     public State(int depth) {
+        this(depth, null);
+    }
+
+    /**
+     * Creates a state whose transitions can be indexed by the alphabet, the root is always indexed by it.
+     *
+     * @param depth    the depth
+     * @param alphabet the alphabet shared by the states of a trie
+     */
+    State(int depth, Alphabet alphabet) {
         this.depth = depth;
+        this.alphabet = alphabet;
+        if (depth == 0 && alphabet != null) {
+            this.table = new State[alphabet.size() + 1];
+        }
     }
 
     public State nextState(char c) {
@@ -37,14 +80,22 @@ public class State implements Serializable {
     }
 
     public State getState(char c) {
-        return success != null ? success.get(c) : null;
+        if (table != null) {
+            int index = alphabet.indexOf(c);
+            return index < table.length ? table[index] : null;
+        }
+        if (labels != null) {
+            int index = Arrays.binarySearch(labels, 0, count, c);
+            return index >= 0 ? children[index] : null;
+        }
+        return count != 0 && label == c ? child : null;
     }
 
     public State getState(char c, boolean ignoreCase) {
-        if (success == null) {
+        if (count == 0) {
             return null;
         }
-        State state = success.get(c);
+        State state = getState(c);
         if (state != null) {
             return state;
         }
@@ -58,7 +109,7 @@ public class State implements Serializable {
                 cc = c;
             }
             if (c != cc) {
-                return success.get(cc);
+                return getState(cc);
             }
         }
         return null;
@@ -73,49 +124,375 @@ public class State implements Serializable {
     }
 
     public State addState(char c) {
-        if (success == null) {
-            success = new HashMap<>();
-        }
-        State state = success.get(c);
+        State state = getState(c);
         if (state == null) {
-            state = new State(depth + 1);
-            success.put(c, state);
+            state = new State(depth + 1, alphabet);
+            put(c, state);
         }
         return state;
     }
 
-    public void addKeyword(String keyword) {
-        if (this.keywords == null) {
-            this.keywords = new TreeSet<>();
+    public State removeState(char c) {
+        State state;
+        if (table != null) {
+            int index = alphabet.indexOf(c);
+            if (index >= table.length || (state = table[index]) == null) {
+                return null;
+            }
+            table[index] = null;
+            if (--count == 0 && depth != 0) {
+                table = null;
+            }
+        } else if (labels != null) {
+            int index = Arrays.binarySearch(labels, 0, count, c);
+            if (index < 0) {
+                return null;
+            }
+            state = children[index];
+            System.arraycopy(labels, index + 1, labels, index, count - index - 1);
+            System.arraycopy(children, index + 1, children, index, count - index - 1);
+            children[--count] = null;
+            if (count == 0) {
+                labels = null;
+                children = null;
+            }
+        } else if (count != 0 && label == c) {
+            state = child;
+            child = null;
+            count = 0;
+        } else {
+            return null;
+        }
+        return state;
+    }
+
+    /**
+     * Adds the transition, the char must be absent.
+     */
+    private void put(char c, State state) {
+        // Every char of the trie is in the alphabet, so the ratio of a table to the alphabet is its fill.
+        int index = alphabet != null ? alphabet.add(c) : 0;
+        if (table != null) {
+            if (index >= table.length) {
+                table = Arrays.copyOf(table, Math.max(index + 1, alphabet.size() + 1));
+            }
+            table[index] = state;
+            count++;
+            return;
+        }
+        if (labels == null) {
+            if (count == 0) {
+                label = c;
+                child = state;
+                count = 1;
+                return;
+            }
+            labels = new char[4];
+            children = new State[4];
+            labels[0] = label;
+            children[0] = child;
+            child = null;
+        } else if (count == labels.length) {
+            labels = Arrays.copyOf(labels, count << 1);
+            children = Arrays.copyOf(children, count << 1);
+        }
+        int i = -Arrays.binarySearch(labels, 0, count, c) - 1;
+        System.arraycopy(labels, i, labels, i + 1, count - i);
+        System.arraycopy(children, i, children, i + 1, count - i);
+        labels[i] = c;
+        children[i] = state;
+        count++;
+        if (alphabet != null && count >= DENSE_MIN_COUNT && count * DENSE_RATIO >= alphabet.size()) {
+            toTable();
+        }
+    }
+
+    /**
+     * Moves the sorted transitions into a table indexed by the alphabet.
+     */
+    private void toTable() {
+        State[] table = new State[alphabet.size() + 1];
+        for (int i = 0; i < count; i++) {
+            table[alphabet.indexOf(labels[i])] = children[i];
         }
-        this.keywords.add(keyword);
+        this.table = table;
+        this.labels = null;
+        this.children = null;
     }
 
+    public void addKeyword(String keyword) {
+        this.keyword = keyword;
+    }
+
+    public void addKeyword(String keyword, int id) {
+        this.keyword = keyword;
+        this.id = id;
+    }
+
+    /**
+     * Sets the keyword ending at this state, a state has a single keyword.
+     *
+     * @deprecated use {@link #addKeyword(String)}, the keywords ending at a state are equal
+     */
+    @Deprecated
     public void addKeywords(Collection<String> keywords) {
-        if (this.keywords == null) {
-            this.keywords = new TreeSet<>();
+        for (String keyword : keywords) {
+            addKeyword(keyword);
         }
-        this.keywords.addAll(keywords);
     }
 
+    public void removeKeyword() {
+        this.keyword = null;
+        this.id = -1;
+    }
+
+    public String getKeyword() {
+        return keyword;
+    }
+
+    /**
+     * Returns the id of the keyword ending at this state, {@code -1} if none.
+     */
+    public int getId() {
+        return id;
+    }
+
+    public boolean hasKeyword() {
+        return keyword != null;
+    }
+
+    /**
+     * Returns the keywords ending at this state, the longest one comes first.
+     */
     public Set<String> getKeywords() {
-        return keywords != null ? keywords : Collections.emptySet();
+        State state = keyword != null ? this : output;
+        if (state == null) {
+            return Collections.emptySet();
+        }
+        Set<String> keywords = new LinkedHashSet<>();
+        for (; state != null; state = state.output) {
+            keywords.add(state.keyword);
+        }
+        return keywords;
     }
 
+    /**
+     * Returns the longest keyword ending at this state.
+     */
     public String getFirstKeyword() {
-        return keywords != null && keywords.size() > 0 ? keywords.first() : null;
+        if (keyword != null) {
+            return keyword;
+        }
+        return output != null ? output.keyword : null;
+    }
+
+    /**
+     * Returns the nearest state on the failure chain that has a keyword.
+     */
+    public State getOutput() {
+        return output;
     }
 
     public State getFailure() {
         return failure;
     }
 
+    /**
+     * Sets the failure, and links this state to the states sharing the same failure.
+     */
     public void setFailure(State failure) {
+        if (this.failure != null) {
+            unlinkInverse();
+        }
         this.failure = failure;
+        if (failure != null) {
+            linkInverse();
+        }
+        updateOutput();
     }
 
+    /**
+     * Sets the failure and the output without linking this state to the failure,
+     * so that the failures can be computed concurrently. {@link #relinkInverse()}
+     * must be called afterwards.
+     */
+    void initFailure(State failure) {
+        this.failure = failure;
+        updateOutput();
+    }
+
+    /**
+     * Returns the failure of the state reached from this state with the given char,
+     * the failures of this state and the shallower states must be up to date.
+     */
+    State childFailure(char c) {
+        if (depth == 0) {
+            return this;
+        }
+        State f = failure;
+        State fn = f.nextState(c);
+        while (fn == null) {
+            f = f.getFailure();
+            fn = f.nextState(c);
+        }
+        return fn;
+    }
+
+    /**
+     * Recomputes the output from the failure.
+     */
+    void updateOutput() {
+        State f = this.failure;
+        this.output = f == null ? null : f.keyword != null ? f : f.output;
+    }
+
+    /**
+     * Returns the first state whose failure is this state,
+     * the others can be reached through {@link #getInverseNext()}.
+     */
+    State getInverse() {
+        return inverse;
+    }
+
+    State getInverseNext() {
+        return inverseNext;
+    }
+
+    /**
+     * Rebuilds the transient link to the failure, which is not serialized.
+     */
+    void relinkInverse() {
+        if (failure != null) {
+            linkInverse();
+        }
+    }
+
+    private void linkInverse() {
+        State head = failure.inverse;
+        this.inversePrev = null;
+        this.inverseNext = head;
+        if (head != null) {
+            head.inversePrev = this;
+        }
+        failure.inverse = this;
+    }
+
+    private void unlinkInverse() {
+        if (inversePrev != null) {
+            inversePrev.inverseNext = inverseNext;
+        } else {
+            failure.inverse = inverseNext;
+        }
+        if (inverseNext != null) {
+            inverseNext.inversePrev = inversePrev;
+        }
+        inversePrev = null;
+        inverseNext = null;
+    }
+
+    /**
+     * Returns an unmodifiable copy of the transitions, which does not reflect the transitions added or removed later.
+     * Use {@link #forEachSuccess(SuccessConsumer)} to iterate them without copying.
+     */
     public Map<Character, State> getSuccess() {
-        return success != null ? success : Collections.emptyMap();
+        if (count == 0) {
+            return Collections.emptyMap();
+        }
+        Map<Character, State> success = new LinkedHashMap<>(count * 2);
+        forEachSuccess(success::put);
+        return Collections.unmodifiableMap(success);
+    }
+
+    /**
+     * Passes each transition to the consumer.
+     */
+    public void forEachSuccess(SuccessConsumer consumer) {
+        if (table != null) {
+            for (int i = 1, n = 0; n < count; i++) {
+                State state = table[i];
+                if (state != null) {
+                    consumer.accept(alphabet.charAt(i), state);
+                    n++;
+                }
+            }
+        } else if (labels != null) {
+            for (int i = 0; i < count; i++) {
+                consumer.accept(labels[i], children[i]);
+            }
+        } else if (count != 0) {
+            consumer.accept(label, child);
+        }
+    }
+
+    /**
+     * Copies the transitions into the arrays, which must be large enough.
+     *
+     * @return the number of transitions
+     */
+    int copySuccess(char[] chars, State[] states) {
+        if (table != null) {
+            for (int i = 1, n = 0; n < count; i++) {
+                if (table[i] != null) {
+                    chars[n] = alphabet.charAt(i);
+                    states[n] = table[i];
+                    n++;
+                }
+            }
+        } else if (labels != null) {
+            System.arraycopy(labels, 0, chars, 0, count);
+            System.arraycopy(children, 0, states, 0, count);
+        } else if (count != 0) {
+            chars[0] = label;
+            states[0] = child;
+        }
+        return count;
+    }
+
+    /**
+     * Returns the number of transitions.
+     */
+    public int getSuccessCount() {
+        return count;
+    }
+
+    /**
+     * Returns the alphabet shared by the states of the trie, {@code null} if none.
+     */
+    Alphabet getAlphabet() {
+        return alphabet;
+    }
+
+    /**
+     * Returns whether the transitions are indexed by the alphabet.
+     */
+    boolean isDense() {
+        return table != null;
+    }
+
+    /**
+     * Returns the estimated heap size of this state and its transitions,
+     * assuming a 64-bit JVM with compressed references.
+     */
+    long estimateBytes() {
+        long bytes = 72;
+        if (table != null) {
+            bytes += align(16 + 4L * table.length);
+        } else if (labels != null) {
+            bytes += align(16 + 2L * labels.length) + align(16 + 4L * children.length);
+        }
+        return bytes;
+    }
+
+    private static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+
+    /**
+     * Receives a transition of a state.
+     */
+    @FunctionalInterface
+    public interface SuccessConsumer {
+        void accept(char c, State state);
     }
 
     public int getDepth() {
@@ -125,4 +502,4 @@ public class State implements Serializable {
     public boolean isRoot() {
         return depth == 0;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,20 @@
+package io.leego.trie;
+
+/**
+ * Receives the matches of a stream scan, the offsets are absolute positions in the stream.
+ *
+ * @author Leego Yih
+ * @see CompiledTrie#scan(java.io.Reader, StreamMatchHandler)
+ */
+@FunctionalInterface
+public interface StreamMatchHandler {
+    /**
+     * Handles a match.
+     *
+     * @param begin     the beginning offset in chars, inclusive
+     * @param end       the ending offset in chars, exclusive
+     * @param keywordId the id of the keyword
+     * @return {@code true} to continue the scan, {@code false} to stop it
+     */
+    boolean onMatch(long begin, long end, int keywordId);
+}
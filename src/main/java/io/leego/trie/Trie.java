@@ -4,78 +4,265 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.HashSet;
-import java.util.LinkedList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 
 /**
+ * Each keyword is given a dense {@code int} id when it is added, the ids are assigned in the order
+ * the keywords are added, and the ids of the removed keywords are reused. A keyword can carry a payload,
+ * both are reported by the {@link Emit}s.
+ *
+ * @param <V> the type of the payloads
  * @author Leego Yih
  */
-public class Trie implements Serializable {
-    private static final long serialVersionUID = 7464998650081881647L;
+public class Trie<V> implements Serializable {
+    private static final long serialVersionUID = -1528306417936645023L;
     private final State root;
+    /** The number of times the keywords have been changed. */
+    private long version;
+    /** The table of the normalizer, {@code null} if the keywords are matched exactly. */
+    private CharTable table;
+    /** The payloads indexed by keyword id. */
+    private Object[] payloads = new Object[16];
+    /** The next id which has never been assigned. */
+    private int nextId;
+    /** The ids of the removed keywords, which are assigned before the new ones. */
+    private final IntList freeIds = new IntList(4);
+    private int size;
+    /** The listener of the metrics, {@code null} if nothing is measured. */
+    private transient TrieListener listener;
 
     public Trie() {
-        this.root = new State(0);
+        this.root = new State(0, new Alphabet());
+    }
+
+    public Trie(Map<String, ? extends V> keywords) {
+        this.root = new State(0, new Alphabet());
+        this.addKeywords(keywords);
     }
 
     public Trie(Set<String> keywords) {
-        this.root = new State(0);
+        this.root = new State(0, new Alphabet());
         this.addKeywords(keywords);
     }
 
     public Trie(String... keywords) {
-        this.root = new State(0);
+        this.root = new State(0, new Alphabet());
         this.addKeywords(keywords);
     }
 
     public Trie(InputStream src) {
-        this.root = new State(0);
+        this.root = new State(0, new Alphabet());
         this.addKeywords(src);
     }
 
-    public Trie addKeywords(Set<String> keywords) {
+    /**
+     * Normalizes the keywords when they are added and the text when it is searched, for example
+     * {@code withNormalizer(CharNormalizer.caseFold())} makes this trie case-insensitive at no extra cost
+     * per char. The emits report the normalized keywords and the offsets in the original text.
+     * The normalizer must be set before any keyword is added.
+     *
+     * @param normalizer the normalizer, or {@code null} to match the keywords exactly
+     * @return this
+     * @throws IllegalStateException if this trie has keywords
+     */
+    public Trie<V> withNormalizer(CharNormalizer normalizer) {
+        if (root.getSuccessCount() != 0) {
+            throw new IllegalStateException("The normalizer must be set before adding keywords");
+        }
+        this.table = normalizer != null ? new CharTable(normalizer) : null;
+        version++;
+        return this;
+    }
+
+    public CharNormalizer getNormalizer() {
+        return table != null ? table.getNormalizer() : null;
+    }
+
+    /**
+     * Sets the listener which receives the metrics of the searches, builds and compilations,
+     * such as a {@link TrieStats}. Without a listener, the searches run the uninstrumented loops.
+     * The listener is not serialized.
+     *
+     * @param listener the listener, {@code null} to stop measuring
+     * @return this
+     */
+    public Trie<V> withListener(TrieListener listener) {
+        this.listener = listener;
+        return this;
+    }
+
+    public TrieListener getListener() {
+        return listener;
+    }
+
+    public Trie<V> addKeywords(Set<String> keywords) {
+        return add(keywords, null);
+    }
+
+    /**
+     * Adds the keywords with their payloads, the payloads of the existing keywords are replaced.
+     *
+     * @param keywords the keywords and their payloads
+     * @return this
+     */
+    public Trie<V> addKeywords(Map<String, ? extends V> keywords) {
+        return add(keywords.keySet(), keywords);
+    }
+
+    public Trie<V> addKeyword(String keyword, V payload) {
+        return addKeywords(Collections.singletonMap(keyword, payload));
+    }
+
+    private Trie<V> add(Collection<String> keywords, Map<String, ? extends V> payloads) {
+        long start = listener != null ? System.nanoTime() : 0;
+        int oldSize = size;
+        boolean empty = root.getSuccessCount() == 0;
+        // Inserts the keywords, and records the new states with their parents and chars.
+        List<State> created = new ArrayList<>();
+        List<State> parents = new ArrayList<>();
+        StringBuilder chars = new StringBuilder();
+        List<State> marked = new ArrayList<>();
+        boolean changed = false;
+        for (String original : keywords) {
+            if (original == null || original.isEmpty()) {
+                continue;
+            }
+            String keyword = table != null ? table.normalize(original) : original;
+            State state = root;
+            for (int i = 0; i < keyword.length(); i++) {
+                char c = keyword.charAt(i);
+                State next = state.getState(c);
+                if (next == null) {
+                    next = state.addState(c);
+                    if (!empty) {
+                        created.add(next);
+                        parents.add(state);
+                        chars.append(c);
+                    }
+                }
+                state = next;
+            }
+            if (!state.hasKeyword()) {
+                int id = nextId();
+                state.addKeyword(keyword, id);
+                payloads(id)[id] = payloads != null ? payloads.get(original) : null;
+                size++;
+                changed = true;
+                // The state existed before, the outputs depending on it must be updated.
+                if (state.getFailure() != null) {
+                    marked.add(state);
+                }
+            } else if (payloads != null) {
+                Object payload = payloads.get(original);
+                if (!Objects.equals(this.payloads[state.getId()], payload)) {
+                    this.payloads[state.getId()] = payload;
+                    changed = true;
+                }
+            }
+        }
+        if (empty) {
+            if (root.getSuccessCount() != 0) {
+                buildFailures();
+            }
+        } else {
+            // The new states are linked in ascending order of depth,
+            // so the failure chains they depend on are already up to date.
+            long[] order = new long[created.size()];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = ((long) created.get(i).getDepth() << 32) | i;
+            }
+            Arrays.sort(order);
+            for (long o : order) {
+                int index = (int) o;
+                State state = created.get(index);
+                State parent = parents.get(index);
+                char c = chars.charAt(index);
+                state.setFailure(failure(parent, c));
+                relinkFailures(parent, state, c);
+            }
+            for (State state : marked) {
+                updateOutputs(state);
+            }
+        }
+        if (changed) {
+            version++;
+        }
+        if (listener != null) {
+            listener.onBuild(size - oldSize, System.nanoTime() - start);
+        }
+        return this;
+    }
+
+    /**
+     * Adds the keywords using the given pool. If this trie is empty, the keywords are partitioned by prefix
+     * and the subtries are built concurrently, then the failures are computed level by level in parallel.
+     * Otherwise the keywords are added incrementally as {@link #addKeywords(Set)} does.
+     * Either way, the result is the same as {@link #addKeywords(Set)}.
+     *
+     * @param keywords the keywords
+     * @param pool     the pool to build with
+     * @return this
+     */
+    public Trie<V> addKeywords(Set<String> keywords, ForkJoinPool pool) {
+        if (root.getSuccessCount() != 0) {
+            return addKeywords(keywords);
+        }
+        long start = listener != null ? System.nanoTime() : 0;
+        List<String> normalized = new ArrayList<>(keywords.size());
         for (String keyword : keywords) {
             if (keyword != null && !keyword.isEmpty()) {
-                root.addState(keyword).addKeyword(keyword);
+                normalized.add(table != null ? table.normalize(keyword) : keyword);
             }
         }
-        Queue<State> states = new LinkedList<>();
-        root.getSuccess().forEach((ignored, state) -> {
-            state.setFailure(root);
-            states.add(state);
-        });
-        while (!states.isEmpty()) {
-            State state = states.poll();
-            state.getSuccess().forEach((c, next) -> {
-                State f = state.getFailure();
-                State fn = f.nextState(c);
-                while (fn == null) {
-                    f = f.getFailure();
-                    fn = f.nextState(c);
-                }
-                next.setFailure(fn);
-                next.addKeywords(fn.getKeywords());
-                states.add(next);
-            });
+        new ParallelTrieBuilder(root, pool).build(normalized);
+        // Assigns the ids in the order of the keywords.
+        for (String keyword : normalized) {
+            State state = root;
+            for (int i = 0; i < keyword.length(); i++) {
+                state = state.getState(keyword.charAt(i));
+            }
+            if (state.getId() < 0) {
+                int id = nextId();
+                state.addKeyword(keyword, id);
+                payloads(id);
+                size++;
+            }
+        }
+        if (root.getSuccessCount() != 0) {
+            version++;
+        }
+        if (listener != null) {
+            listener.onBuild(size, System.nanoTime() - start);
         }
         return this;
     }
 
-    public Trie addKeywords(String... keywords) {
+    public Trie<V> addKeywords(String... keywords) {
         if (keywords == null || keywords.length == 0) {
             return this;
         }
-        Set<String> keywordSet = new HashSet<>();
+        Set<String> keywordSet = new LinkedHashSet<>();
         Collections.addAll(keywordSet, keywords);
         return addKeywords(keywordSet);
     }
 
-    public Trie addKeywords(InputStream src) {
-        Set<String> keywords = new HashSet<>();
+    public Trie<V> addKeywords(InputStream src) {
+        Set<String> keywords = new LinkedHashSet<>();
         try (InputStreamReader inputStreamReader = new InputStreamReader(src);
              BufferedReader bufferedReader = new BufferedReader(inputStreamReader)) {
             String line;
@@ -88,13 +275,77 @@ public class Trie implements Serializable {
         return addKeywords(keywords);
     }
 
+    public Trie<V> removeKeywords(Set<String> keywords) {
+        long start = listener != null ? System.nanoTime() : 0;
+        int oldSize = size;
+        keywords = normalize(keywords);
+        State[] path = new State[16];
+        for (String keyword : keywords) {
+            if (keyword == null || keyword.isEmpty()) {
+                continue;
+            }
+            int len = keyword.length();
+            if (path.length <= len) {
+                path = new State[len + 1];
+            }
+            State state = root;
+            path[0] = state;
+            for (int i = 0; i < len && state != null; i++) {
+                state = state.getState(keyword.charAt(i));
+                path[i + 1] = state;
+            }
+            if (state == null || !keyword.equals(state.getKeyword())) {
+                continue;
+            }
+            int id = state.getId();
+            payloads[id] = null;
+            freeIds.add(id);
+            size--;
+            state.removeKeyword();
+            updateOutputs(state);
+            version++;
+            // Removes the states which are no longer prefixes of any keyword.
+            for (int i = len; i > 0; i--) {
+                State s = path[i];
+                if (s.hasKeyword() || s.getSuccessCount() != 0) {
+                    break;
+                }
+                path[i - 1].removeState(keyword.charAt(i - 1));
+                State failure = s.getFailure();
+                for (State inverse = s.getInverse(); inverse != null; ) {
+                    State next = inverse.getInverseNext();
+                    inverse.setFailure(failure);
+                    inverse = next;
+                }
+                s.setFailure(null);
+            }
+        }
+        if (listener != null) {
+            listener.onBuild(oldSize - size, System.nanoTime() - start);
+        }
+        return this;
+    }
+
+    public Trie<V> removeKeywords(String... keywords) {
+        if (keywords == null || keywords.length == 0) {
+            return this;
+        }
+        Set<String> keywordSet = new HashSet<>();
+        Collections.addAll(keywordSet, keywords);
+        return removeKeywords(keywordSet);
+    }
+
     public Emits findAll(CharSequence text, boolean ignoreCase) {
+        if (listener != null) {
+            return findAll(text, ignoreCase, listener);
+        }
         Emits emits = new Emits(text);
         State state = root;
         for (int i = 0, len = text.length(); i < len; i++) {
-            state = nextState(state, text.charAt(i), ignoreCase);
-            for (String keyword : state.getKeywords()) {
-                emits.add(new Emit(i - keyword.length() + 1, i + 1, keyword));
+            state = nextState(state, table != null ? table.normalize(text, i) : text.charAt(i), ignoreCase);
+            for (State s = state.hasKeyword() ? state : state.getOutput(); s != null; s = s.getOutput()) {
+                String keyword = s.getKeyword();
+                emits.add(new Emit(i - keyword.length() + 1, i + 1, keyword, s.getId(), payloads[s.getId()]));
             }
         }
         return emits;
@@ -108,13 +359,97 @@ public class Trie implements Serializable {
         return findAll(text, true);
     }
 
+    /**
+     * Finds all keywords, ignoring the skip chars between the chars of a keyword.
+     *
+     * @param text       the text
+     * @param ignoreCase whether to ignore case
+     * @param skipChars  the chars to skip
+     * @return the emits, which cover the obfuscated spans of the text
+     * @see CompiledTrie#findAll(CharSequence, boolean, SkipChars)
+     */
+    public Emits findAll(CharSequence text, boolean ignoreCase, SkipChars skipChars) {
+        Emits emits = new Emits(text);
+        PositionRing ring = new PositionRing(16);
+        int maxGap = skipChars.getMaxGap();
+        State state = root;
+        int gap = 0;
+        for (int i = 0, len = text.length(); i < len; i++) {
+            if (skipChars.contains(text.charAt(i))) {
+                if (++gap > maxGap) {
+                    state = root;
+                }
+                continue;
+            }
+            gap = 0;
+            // The ring holds the chars of the current state and the next one.
+            ring.ensureCapacity(state.getDepth() + 1);
+            ring.add(i);
+            state = nextState(state, table != null ? table.normalize(text, i) : text.charAt(i), ignoreCase);
+            for (State s = state.hasKeyword() ? state : state.getOutput(); s != null; s = s.getOutput()) {
+                String keyword = s.getKeyword();
+                emits.add(new Emit(ring.get(keyword.length() - 1), i + 1, keyword, s.getId(), payloads[s.getId()]));
+            }
+        }
+        return emits;
+    }
+
+    public Emits findAll(CharSequence text, SkipChars skipChars) {
+        return findAll(text, false, skipChars);
+    }
+
+    /**
+     * Finds the keywords within the given edit distance of any substring of the text. Each beginning index of
+     * a keyword is reported once, at the nearest end where its distance is the smallest, with the distance in
+     * {@link Emit#getDistance()}, so the maximum distance {@code 0} finds the same emits as {@link #findAll}.
+     * A keyword is not reported if all its chars are edited. The cost grows with the number of states whose
+     * prefixes are within the distance of the text, so small distances such as {@code 1} or {@code 2} are
+     * intended.
+     *
+     * @param text        the text
+     * @param ignoreCase  whether to ignore case
+     * @param maxDistance the maximum number of inserted, deleted or substituted chars
+     * @return the emits in ascending order of the ending index, then of the beginning index
+     */
+    public Emits findAllFuzzy(CharSequence text, boolean ignoreCase, int maxDistance) {
+        if (maxDistance < 0) {
+            throw new IllegalArgumentException("Illegal max distance: " + maxDistance);
+        }
+        char[] chars = new char[text.length()];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = table != null ? table.normalize(text, i) : text.charAt(i);
+        }
+        char[] swapped = null;
+        if (ignoreCase) {
+            swapped = new char[chars.length];
+            for (int i = 0; i < chars.length; i++) {
+                char c = chars[i];
+                swapped[i] = Character.isLowerCase(c) ? Character.toUpperCase(c)
+                        : Character.isUpperCase(c) ? Character.toLowerCase(c) : c;
+            }
+        }
+        Emits emits = new Emits(text);
+        new FuzzySearch(chars, swapped, maxDistance, payloads, emits).search(root);
+        emits.sort((a, b) -> a.getEnd() != b.getEnd()
+                ? Integer.compare(a.getEnd(), b.getEnd()) : Integer.compare(a.getBegin(), b.getBegin()));
+        return emits;
+    }
+
+    public Emits findAllFuzzy(CharSequence text, int maxDistance) {
+        return findAllFuzzy(text, false, maxDistance);
+    }
+
     public Emit findFirst(CharSequence text, boolean ignoreCase) {
+        if (listener != null) {
+            return findFirst(text, ignoreCase, listener);
+        }
         State state = root;
         for (int i = 0, len = text.length(); i < len; i++) {
-            state = nextState(state, text.charAt(i), ignoreCase);
-            String keyword = state.getFirstKeyword();
-            if (keyword != null) {
-                return new Emit(i - keyword.length() + 1, i + 1, keyword);
+            state = nextState(state, table != null ? table.normalize(text, i) : text.charAt(i), ignoreCase);
+            State s = state.hasKeyword() ? state : state.getOutput();
+            if (s != null) {
+                String keyword = s.getKeyword();
+                return new Emit(i - keyword.length() + 1, i + 1, keyword, s.getId(), payloads[s.getId()]);
             }
         }
         return null;
@@ -128,6 +463,222 @@ public class Trie implements Serializable {
         return findFirst(text, true);
     }
 
+    /**
+     * Returns the id of the keyword, {@code -1} if absent.
+     */
+    public int getId(String keyword) {
+        State state = getState(keyword);
+        return state != null ? state.getId() : -1;
+    }
+
+    /**
+     * Returns the payload of the keyword, {@code null} if absent or none.
+     */
+    @SuppressWarnings("unchecked")
+    public V getPayload(String keyword) {
+        State state = getState(keyword);
+        return state != null && state.hasKeyword() ? (V) payloads[state.getId()] : null;
+    }
+
+    /**
+     * Returns the number of keywords.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of times the keywords have been changed,
+     * adding existing keywords or removing absent ones does not count.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Compiles the current keywords into an immutable {@link CompiledTrie},
+     * later changes to this trie are not reflected in the returned one.
+     *
+     * @return the compiled trie
+     */
+    public CompiledTrie compile() {
+        return compile(new CompileOptions(), null);
+    }
+
+    /**
+     * Compiles the current keywords with the given options.
+     *
+     * @param options the options
+     * @return the compiled trie
+     * @see #compile()
+     */
+    public CompiledTrie compile(CompileOptions options) {
+        return compile(options, null);
+    }
+
+    /**
+     * Compiles the current keywords into an immutable {@link Utf8Trie},
+     * which scans UTF-8 encoded bytes without decoding them. The normalizer is not applied to the bytes.
+     *
+     * @return the compiled trie
+     * @throws IllegalArgumentException if a keyword has an unpaired surrogate, which has no UTF-8 encoding
+     */
+    public Utf8Trie compileUtf8() {
+        return new Utf8Trie(root);
+    }
+
+    /**
+     * Compiles the current keywords into an immutable {@link CodePointTrie},
+     * which steps over whole code points, so the surrogate pairs are matched and case folded as one character.
+     *
+     * @return the compiled trie
+     */
+    public CodePointTrie compileCodePoints() {
+        return new CodePointTrie(root, getNormalizer(), payloads);
+    }
+
+    /**
+     * Compiles the current keywords with the options of the previous one, sharing the unchanged structures with it.
+     */
+    CompiledTrie compile(CompiledTrie previous) {
+        return compile(previous.getOptions(), previous);
+    }
+
+    private CompiledTrie compile(CompileOptions options, CompiledTrie previous) {
+        if (listener == null) {
+            return new CompiledTrie(root, table, payloads, options, previous);
+        }
+        long start = System.nanoTime();
+        CompiledTrie compiled = new CompiledTrie(root, table, payloads, options, previous);
+        listener.onCompile(System.nanoTime() - start);
+        return compiled;
+    }
+
+    /**
+     * Returns the structure of this trie, the states are walked each time.
+     */
+    public TrieStructure structure() {
+        int nodes = 0;
+        int edges = 0;
+        int denseNodes = 0;
+        int maxDepth = 0;
+        long bytes = 0;
+        Deque<State> states = new ArrayDeque<>();
+        states.push(root);
+        while (!states.isEmpty()) {
+            State state = states.pop();
+            nodes++;
+            maxDepth = Math.max(maxDepth, state.getDepth());
+            bytes += state.estimateBytes();
+            edges += state.getSuccessCount();
+            if (state.isDense()) {
+                denseNodes++;
+            }
+            state.forEachSuccess((c, next) -> states.push(next));
+            if (state.hasKeyword()) {
+                bytes += 24 + align(16 + 2L * state.getKeyword().length());
+            }
+        }
+        bytes += align(16 + 4L * payloads.length);
+        return new TrieStructure(nodes, edges, denseNodes, size, maxDepth, bytes);
+    }
+
+    /**
+     * Same as {@link #findAll(CharSequence, boolean)}, but counts the failure transitions for the listener.
+     */
+    private Emits findAll(CharSequence text, boolean ignoreCase, TrieListener listener) {
+        Emits emits = new Emits(text);
+        State state = root;
+        long hops = 0;
+        for (int i = 0, len = text.length(); i < len; i++) {
+            char c = table != null ? table.normalize(text, i) : text.charAt(i);
+            State next = state.nextState(c, ignoreCase);
+            while (next == null) {
+                state = state.getFailure();
+                next = state.nextState(c, ignoreCase);
+                hops++;
+            }
+            state = next;
+            for (State s = state.hasKeyword() ? state : state.getOutput(); s != null; s = s.getOutput()) {
+                String keyword = s.getKeyword();
+                emits.add(new Emit(i - keyword.length() + 1, i + 1, keyword, s.getId(), payloads[s.getId()]));
+            }
+        }
+        listener.onSearch(text.length(), emits.size(), hops);
+        return emits;
+    }
+
+    /**
+     * Same as {@link #findFirst(CharSequence, boolean)}, but counts the failure transitions for the listener.
+     */
+    private Emit findFirst(CharSequence text, boolean ignoreCase, TrieListener listener) {
+        State state = root;
+        long hops = 0;
+        for (int i = 0, len = text.length(); i < len; i++) {
+            char c = table != null ? table.normalize(text, i) : text.charAt(i);
+            State next = state.nextState(c, ignoreCase);
+            while (next == null) {
+                state = state.getFailure();
+                next = state.nextState(c, ignoreCase);
+                hops++;
+            }
+            state = next;
+            State s = state.hasKeyword() ? state : state.getOutput();
+            if (s != null) {
+                String keyword = s.getKeyword();
+                listener.onSearch(i + 1, 1, hops);
+                return new Emit(i - keyword.length() + 1, i + 1, keyword, s.getId(), payloads[s.getId()]);
+            }
+        }
+        listener.onSearch(text.length(), 0, hops);
+        return null;
+    }
+
+    private State getState(String keyword) {
+        if (keyword == null || keyword.isEmpty()) {
+            return null;
+        }
+        if (table != null) {
+            keyword = table.normalize(keyword);
+        }
+        State state = root;
+        for (int i = 0; i < keyword.length() && state != null; i++) {
+            state = state.getState(keyword.charAt(i));
+        }
+        return state;
+    }
+
+    private int nextId() {
+        return freeIds.isEmpty() ? nextId++ : freeIds.removeLast();
+    }
+
+    /**
+     * Returns the payloads, grown to hold the given id.
+     */
+    private Object[] payloads(int id) {
+        if (id >= payloads.length) {
+            payloads = Arrays.copyOf(payloads, Math.max(id + 1, payloads.length << 1));
+        }
+        return payloads;
+    }
+
+    private static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+
+    private Set<String> normalize(Set<String> keywords) {
+        if (table == null) {
+            return keywords;
+        }
+        Set<String> normalized = new HashSet<>(keywords.size() * 2);
+        for (String keyword : keywords) {
+            if (keyword != null && !keyword.isEmpty()) {
+                normalized.add(table.normalize(keyword));
+            }
+        }
+        return normalized;
+    }
+
     private State nextState(State state, char c, boolean ignoreCase) {
         State next = state.nextState(c, ignoreCase);
         while (next == null) {
@@ -136,4 +687,87 @@ public class Trie implements Serializable {
         }
         return next;
     }
+
+    /**
+     * Computes the failures of all states breadth-first.
+     */
+    private void buildFailures() {
+        Queue<State> states = new ArrayDeque<>();
+        root.forEachSuccess((ignored, state) -> {
+            state.setFailure(root);
+            states.add(state);
+        });
+        while (!states.isEmpty()) {
+            State state = states.poll();
+            state.forEachSuccess((c, next) -> {
+                next.setFailure(failure(state, c));
+                states.add(next);
+            });
+        }
+    }
+
+    /**
+     * Returns the failure of the state reached from the parent with the given char.
+     */
+    private State failure(State parent, char c) {
+        return parent.childFailure(c);
+    }
+
+    /**
+     * Redirects the failures of the existing states to the new state if it is a longer suffix.
+     * Only the states whose failure chains pass through the parent of the new state are visited,
+     * and the subtrees which already have a transition with the char are skipped.
+     */
+    private void relinkFailures(State parent, State state, char c) {
+        Deque<State> stack = new ArrayDeque<>();
+        pushInverses(stack, parent);
+        while (!stack.isEmpty()) {
+            State s = stack.pop();
+            if (s == state) {
+                continue;
+            }
+            State next = s.getState(c);
+            if (next == null) {
+                pushInverses(stack, s);
+            } else if (next.getFailure() != null) {
+                next.setFailure(state);
+                if (!next.hasKeyword()) {
+                    updateOutputs(next);
+                }
+            }
+        }
+    }
+
+    /**
+     * Recomputes the outputs of the states whose failure chains pass through the given state,
+     * the subtrees of the states with keywords are skipped.
+     */
+    private void updateOutputs(State state) {
+        Deque<State> stack = new ArrayDeque<>();
+        pushInverses(stack, state);
+        while (!stack.isEmpty()) {
+            State s = stack.pop();
+            s.updateOutput();
+            if (!s.hasKeyword()) {
+                pushInverses(stack, s);
+            }
+        }
+    }
+
+    private void pushInverses(Deque<State> stack, State state) {
+        for (State s = state.getInverse(); s != null; s = s.getInverseNext()) {
+            stack.push(s);
+        }
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        Queue<State> states = new ArrayDeque<>();
+        states.add(root);
+        while (!states.isEmpty()) {
+            State state = states.poll();
+            state.relinkInverse();
+            state.forEachSuccess((c, next) -> states.add(next));
+        }
+    }
 }
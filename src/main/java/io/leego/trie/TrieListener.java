@@ -0,0 +1,38 @@
+package io.leego.trie;
+
+/**
+ * Receives the metrics of a {@link Trie}. Nothing is measured unless a listener is set,
+ * the methods are called on the searching and the updating threads, so they must be cheap and thread-safe.
+ *
+ * @author Leego Yih
+ * @see Trie#withListener(TrieListener)
+ * @see TrieStats
+ */
+public interface TrieListener {
+    /**
+     * Called after each search.
+     *
+     * @param chars       the number of chars scanned
+     * @param matches     the number of matches emitted
+     * @param failureHops the number of failure transitions followed
+     */
+    default void onSearch(long chars, long matches, long failureHops) {
+    }
+
+    /**
+     * Called after the keywords have been added or removed.
+     *
+     * @param keywords the number of keywords added or removed
+     * @param nanos    the time taken in nanoseconds
+     */
+    default void onBuild(long keywords, long nanos) {
+    }
+
+    /**
+     * Called after the trie has been compiled.
+     *
+     * @param nanos the time taken in nanoseconds
+     */
+    default void onCompile(long nanos) {
+    }
+}
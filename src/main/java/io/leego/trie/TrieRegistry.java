@@ -0,0 +1,251 @@
+package io.leego.trie;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+
+/**
+ * Manages many named dictionaries which share a common base list, each one adds a small overlay of its own.
+ * <p>
+ * The base is compiled once and shared by all the dictionaries. The overlays are loaded lazily on the first
+ * {@link #get(String)}, compiled without the keywords already in the base, and kept in a size-bounded cache
+ * which evicts the least recently used ones. The cache is split into shards by the hash of the name.
+ * The loader is called outside the lock of the shard, so a slow load only blocks the callers waiting
+ * for the same name, which share its result.
+ *
+ * @param <V> the type of the payloads
+ * @author Leego Yih
+ */
+public class TrieRegistry<V> {
+    private static final int MAX_SHARDS = 16;
+    /** The minimum number of overlays of each shard, so that a small registry evicts in the global order. */
+    private static final int MIN_SHARD_SIZE = 64;
+    private final Function<String, ? extends Map<String, ? extends V>> loader;
+    private final Shard[] shards;
+    private volatile Base<V> base;
+
+    /**
+     * Creates a registry.
+     *
+     * @param base        the base keywords with their normalizer, which must not be changed afterwards
+     * @param maximumSize the maximum number of overlays kept
+     * @param loader      the function which loads the overlay keywords of a name, {@code null} for none
+     */
+    public TrieRegistry(Trie<V> base, int maximumSize, Function<String, ? extends Map<String, ? extends V>> loader) {
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException("Illegal maximum size: " + maximumSize);
+        }
+        int count = Math.min(MAX_SHARDS, (maximumSize + MIN_SHARD_SIZE - 1) / MIN_SHARD_SIZE);
+        this.shards = new Shard[count];
+        for (int i = 0; i < count; i++) {
+            // The sizes of the shards add up to the maximum size.
+            shards[i] = new Shard(maximumSize / count + (i < maximumSize % count ? 1 : 0));
+        }
+        this.loader = loader;
+        this.base = new Base<>(base);
+    }
+
+    /**
+     * Returns the dictionary with the given name, which is loaded if absent.
+     * The concurrent calls for the same name wait for a single load, and get its exception if it fails.
+     *
+     * @param name the name
+     * @return the base combined with the overlay of the name
+     */
+    public OverlayTrie get(String name) {
+        Shard shard = shard(name);
+        for (; ; ) {
+            Base<V> base = this.base;
+            CompletableFuture<OverlayTrie> loading;
+            boolean owner;
+            synchronized (shard) {
+                OverlayTrie trie = shard.get(name);
+                // The overlays loaded against a replaced base are loaded again.
+                if (trie != null && trie.getBase() == base.compiled) {
+                    return trie;
+                }
+                loading = shard.loading.get(name);
+                owner = loading == null;
+                if (owner) {
+                    loading = new CompletableFuture<>();
+                    shard.loading.put(name, loading);
+                }
+            }
+            if (owner) {
+                return load(name, base, shard, loading);
+            }
+            OverlayTrie trie = join(loading);
+            // A load started against a replaced base is not returned.
+            if (trie.getBase() == base.compiled) {
+                return trie;
+            }
+        }
+    }
+
+    /**
+     * Returns the dictionary with the given name, {@code null} if not loaded.
+     */
+    public OverlayTrie getIfPresent(String name) {
+        Shard shard = shard(name);
+        synchronized (shard) {
+            OverlayTrie trie = shard.get(name);
+            return trie != null && trie.getBase() == base.compiled ? trie : null;
+        }
+    }
+
+    /**
+     * Evicts the dictionary with the given name, it is loaded again by the next {@link #get(String)}.
+     */
+    public void invalidate(String name) {
+        Shard shard = shard(name);
+        synchronized (shard) {
+            shard.remove(name);
+            shard.loading.remove(name);
+        }
+    }
+
+    /**
+     * Evicts all the dictionaries.
+     */
+    public void invalidateAll() {
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                shard.clear();
+                shard.loading.clear();
+            }
+        }
+    }
+
+    /**
+     * Replaces the base keywords, every dictionary is loaded again against the new base.
+     *
+     * @param base the base keywords, which must not be changed afterwards
+     */
+    public void setBase(Trie<V> base) {
+        this.base = new Base<>(base);
+        invalidateAll();
+    }
+
+    /**
+     * Returns the compiled base, which is shared by all the dictionaries.
+     */
+    public CompiledTrie getBase() {
+        return base.compiled;
+    }
+
+    /**
+     * Returns the number of loaded dictionaries.
+     */
+    public int size() {
+        int size = 0;
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                size += shard.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Loads the overlay without holding the lock, then keeps it unless it has been invalidated meanwhile.
+     */
+    private OverlayTrie load(String name, Base<V> base, Shard shard, CompletableFuture<OverlayTrie> loading) {
+        OverlayTrie trie;
+        try {
+            trie = load(name, base);
+        } catch (RuntimeException | Error e) {
+            synchronized (shard) {
+                shard.loading.remove(name, loading);
+            }
+            loading.completeExceptionally(e);
+            throw e;
+        }
+        synchronized (shard) {
+            if (shard.loading.remove(name, loading) && base == this.base) {
+                shard.put(name, trie);
+            }
+        }
+        loading.complete(trie);
+        return trie;
+    }
+
+    private static OverlayTrie join(CompletableFuture<OverlayTrie> loading) {
+        try {
+            return loading.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
+
+    private OverlayTrie load(String name, Base<V> base) {
+        Trie<V> overlay = new Trie<V>().withNormalizer(base.trie.getNormalizer());
+        Map<String, ? extends V> keywords = loader.apply(name);
+        if (keywords != null) {
+            Map<String, V> delta = new LinkedHashMap<>();
+            for (Map.Entry<String, ? extends V> entry : keywords.entrySet()) {
+                if (base.trie.getId(entry.getKey()) < 0) {
+                    delta.put(entry.getKey(), entry.getValue());
+                }
+            }
+            overlay.addKeywords(delta);
+        }
+        return new OverlayTrie(base.compiled, overlay.compile(base.compiled.getOptions()));
+    }
+
+    private Shard shard(String name) {
+        int h = name.hashCode();
+        return shards[((h ^ (h >>> 16)) & 0x7fffffff) % shards.length];
+    }
+
+    /**
+     * Maps the keywords to {@code null} payloads, for the loaders without payloads.
+     *
+     * @param keywords the keywords
+     * @return the keywords mapped to {@code null}
+     */
+    public static <V> Map<String, V> withoutPayloads(Set<String> keywords) {
+        Map<String, V> map = new LinkedHashMap<>();
+        for (String keyword : keywords) {
+            map.put(keyword, null);
+        }
+        return map;
+    }
+
+    private static final class Base<V> {
+        final Trie<V> trie;
+        final CompiledTrie compiled;
+
+        Base(Trie<V> trie) {
+            this.trie = trie;
+            this.compiled = trie.compile();
+        }
+    }
+
+    /** The least recently used overlays of a shard, guarded by itself. */
+    private static final class Shard extends LinkedHashMap<String, OverlayTrie> {
+        private static final long serialVersionUID = 1L;
+        private final int maximumSize;
+        /** The overlays being loaded, an invalidated one is removed so that its result is not kept. */
+        final transient Map<String, CompletableFuture<OverlayTrie>> loading = new HashMap<>();
+
+        Shard(int maximumSize) {
+            super(16, 0.75f, true);
+            this.maximumSize = maximumSize;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, OverlayTrie> eldest) {
+            return size() > maximumSize;
+        }
+    }
+}
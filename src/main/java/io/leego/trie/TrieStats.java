@@ -0,0 +1,157 @@
+package io.leego.trie;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A {@link TrieListener} which accumulates the metrics into {@link LongAdder}s,
+ * so the concurrent searches do not contend. It can be exported through JMX.
+ * <pre>
+ * TrieStats stats = new TrieStats();
+ * Trie trie = new Trie().withListener(stats);
+ * stats.register("io.leego.trie:type=TrieStats,name=dict");
+ * </pre>
+ *
+ * @author Leego Yih
+ */
+public class TrieStats implements TrieListener, TrieStatsMXBean {
+    private final LongAdder searches = new LongAdder();
+    private final LongAdder charsScanned = new LongAdder();
+    private final LongAdder matches = new LongAdder();
+    private final LongAdder failureHops = new LongAdder();
+    private final LongAdder builds = new LongAdder();
+    private final LongAdder buildNanos = new LongAdder();
+    private final LongAdder compiles = new LongAdder();
+    private final LongAdder compileNanos = new LongAdder();
+
+    @Override
+    public void onSearch(long chars, long matches, long failureHops) {
+        this.searches.increment();
+        this.charsScanned.add(chars);
+        this.matches.add(matches);
+        this.failureHops.add(failureHops);
+    }
+
+    @Override
+    public void onBuild(long keywords, long nanos) {
+        this.builds.increment();
+        this.buildNanos.add(nanos);
+    }
+
+    @Override
+    public void onCompile(long nanos) {
+        this.compiles.increment();
+        this.compileNanos.add(nanos);
+    }
+
+    @Override
+    public long getSearches() {
+        return searches.sum();
+    }
+
+    @Override
+    public long getCharsScanned() {
+        return charsScanned.sum();
+    }
+
+    @Override
+    public long getMatches() {
+        return matches.sum();
+    }
+
+    @Override
+    public long getFailureHops() {
+        return failureHops.sum();
+    }
+
+    @Override
+    public double getHitRate() {
+        long chars = charsScanned.sum();
+        return chars != 0 ? (double) matches.sum() / chars : 0;
+    }
+
+    @Override
+    public double getFailureHopsPerChar() {
+        long chars = charsScanned.sum();
+        return chars != 0 ? (double) failureHops.sum() / chars : 0;
+    }
+
+    @Override
+    public long getBuilds() {
+        return builds.sum();
+    }
+
+    @Override
+    public long getBuildNanos() {
+        return buildNanos.sum();
+    }
+
+    @Override
+    public long getCompiles() {
+        return compiles.sum();
+    }
+
+    @Override
+    public long getCompileNanos() {
+        return compileNanos.sum();
+    }
+
+    @Override
+    public void reset() {
+        searches.reset();
+        charsScanned.reset();
+        matches.reset();
+        failureHops.reset();
+        builds.reset();
+        buildNanos.reset();
+        compiles.reset();
+        compileNanos.reset();
+    }
+
+    /**
+     * Registers this to the platform MBean server.
+     *
+     * @param name the object name, such as {@code io.leego.trie:type=TrieStats,name=dict}
+     * @return the registered name
+     */
+    public ObjectName register(String name) {
+        try {
+            ObjectName objectName = new ObjectName(name);
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+            return objectName;
+        } catch (JMException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    /**
+     * Unregisters the name from the platform MBean server if it is registered.
+     *
+     * @param name the object name
+     */
+    public static void unregister(ObjectName name) {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+        } catch (JMException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "TrieStats{searches=" + getSearches()
+                + ", charsScanned=" + getCharsScanned()
+                + ", matches=" + getMatches()
+                + ", failureHops=" + getFailureHops()
+                + ", builds=" + getBuilds()
+                + ", buildNanos=" + getBuildNanos()
+                + ", compiles=" + getCompiles()
+                + ", compileNanos=" + getCompileNanos() + "}";
+    }
+}
@@ -0,0 +1,37 @@
+package io.leego.trie;
+
+/**
+ * The management interface of {@link TrieStats}.
+ *
+ * @author Leego Yih
+ * @see TrieStats#register(String)
+ */
+public interface TrieStatsMXBean {
+    long getSearches();
+
+    long getCharsScanned();
+
+    long getMatches();
+
+    long getFailureHops();
+
+    /**
+     * Returns the number of matches per char scanned.
+     */
+    double getHitRate();
+
+    /**
+     * Returns the number of failure transitions per char scanned.
+     */
+    double getFailureHopsPerChar();
+
+    long getBuilds();
+
+    long getBuildNanos();
+
+    long getCompiles();
+
+    long getCompileNanos();
+
+    void reset();
+}
@@ -0,0 +1,75 @@
+package io.leego.trie;
+
+/**
+ * The structure of a {@link Trie} at the time it was reported.
+ *
+ * @author Leego Yih
+ * @see Trie#structure()
+ */
+public class TrieStructure {
+    private final int nodeCount;
+    private final int edgeCount;
+    private final int denseNodeCount;
+    private final int keywordCount;
+    private final int maxDepth;
+    private final long estimatedBytes;
+
+    TrieStructure(int nodeCount, int edgeCount, int denseNodeCount, int keywordCount, int maxDepth, long estimatedBytes) {
+        this.nodeCount = nodeCount;
+        this.edgeCount = edgeCount;
+        this.denseNodeCount = denseNodeCount;
+        this.keywordCount = keywordCount;
+        this.maxDepth = maxDepth;
+        this.estimatedBytes = estimatedBytes;
+    }
+
+    /**
+     * Returns the number of states, including the root.
+     */
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * Returns the number of goto transitions.
+     */
+    public int getEdgeCount() {
+        return edgeCount;
+    }
+
+    /**
+     * Returns the number of states whose transitions are indexed directly by the alphabet, including the root.
+     */
+    public int getDenseNodeCount() {
+        return denseNodeCount;
+    }
+
+    public int getKeywordCount() {
+        return keywordCount;
+    }
+
+    /**
+     * Returns the depth of the deepest state, which is the length of the longest keyword.
+     */
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * Returns the estimated heap size of the states, their transitions and keywords,
+     * assuming a 64-bit JVM with compressed references.
+     */
+    public long getEstimatedBytes() {
+        return estimatedBytes;
+    }
+
+    @Override
+    public String toString() {
+        return "TrieStructure{nodeCount=" + nodeCount
+                + ", edgeCount=" + edgeCount
+                + ", denseNodeCount=" + denseNodeCount
+                + ", keywordCount=" + keywordCount
+                + ", maxDepth=" + maxDepth
+                + ", estimatedBytes=" + estimatedBytes + "}";
+    }
+}
@@ -0,0 +1,22 @@
+package io.leego.trie;
+
+/**
+ * Receives the matches found by {@link Utf8Trie} with both the byte offsets and the char offsets.
+ *
+ * @author Leego Yih
+ * @see Utf8Trie#scan(byte[], Utf8MatchHandler)
+ */
+@FunctionalInterface
+public interface Utf8MatchHandler {
+    /**
+     * Handles a match.
+     *
+     * @param begin     the beginning byte offset, inclusive
+     * @param end       the ending byte offset, exclusive
+     * @param charBegin the beginning offset in the decoded chars, inclusive
+     * @param charEnd   the ending offset in the decoded chars, exclusive
+     * @param keywordId the id of the keyword, see {@link Utf8Trie#getKeyword(int)}
+     * @return {@code true} to continue the scan, {@code false} to stop it
+     */
+    boolean onMatch(int begin, int end, int charBegin, int charEnd, int keywordId);
+}
@@ -0,0 +1,346 @@
+package io.leego.trie;
+
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * An immutable Aho-Corasick automaton over the UTF-8 bytes of the keywords, so UTF-8 encoded input
+ * such as network buffers can be scanned directly without being decoded into a {@link String}.
+ * Each byte is one step, the labels are the byte values plus one, packed into a double-array
+ * like {@link CompiledTrie}.
+ * <p>
+ * The matches are reported with the byte offsets relative to the beginning of the scanned range,
+ * and with the char offsets as well through a {@link Utf8MatchHandler}. The char offsets assume
+ * the input is valid UTF-8. The keyword ids are the same as those of {@link CompiledTrie}.
+ *
+ * @author Leego Yih
+ * @see Trie#compileUtf8()
+ */
+public class Utf8Trie implements Serializable {
+    private static final long serialVersionUID = -3184208736517650127L;
+    private static final int ROOT = DoubleArrayBuilder.ROOT;
+    private static final int MAX_LABEL = 256;
+    private final int[] base;
+    private final int[] check;
+    private final int[] fail;
+    /** The offset of the output list of each slot in {@link #outputs}, {@code -1} if none. */
+    private final int[] output;
+    /** The output lists, each one is the number of keywords followed by the keyword ids. */
+    private final int[] outputs;
+    /** The keywords indexed by keyword id, {@code null} for the ids not in use. */
+    private final String[] keywords;
+    /** The number of UTF-8 bytes of each keyword. */
+    private final int[] byteLengths;
+    /** The number of keywords. */
+    private final int size;
+
+    Utf8Trie(State root) {
+        List<State> states = new ArrayList<>();
+        states.add(root);
+        int maxId = -1;
+        for (int i = 0; i < states.size(); i++) {
+            State state = states.get(i);
+            if (state.hasKeyword()) {
+                maxId = Math.max(maxId, state.getId());
+            }
+            state.forEachSuccess((c, next) -> states.add(next));
+        }
+        this.keywords = new String[maxId + 1];
+        int n = 0;
+        for (State state : states) {
+            if (state.hasKeyword()) {
+                keywords[state.getId()] = state.getKeyword();
+                n++;
+            }
+        }
+        states.clear();
+        this.size = n;
+        byte[][] encoded = new byte[keywords.length][];
+        Integer[] order = new Integer[n];
+        this.byteLengths = new int[keywords.length];
+        // String.getBytes replaces an unpaired surrogate with '?', which would merge distinct keywords.
+        CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+        for (int i = 0, j = 0; i < keywords.length; i++) {
+            if (keywords[i] != null) {
+                encoded[i] = encode(encoder, keywords[i]);
+                byteLengths[i] = encoded[i].length;
+                order[j++] = i;
+            }
+        }
+        // Sorts the keywords by their UTF-8 bytes.
+        Arrays.sort(order, Comparator.comparing(i -> encoded[i], Utf8Trie::compareUnsigned));
+
+        // Each node is a range of the sorted keywords sharing a prefix of the node depth,
+        // the keyword ending at the node, if any, comes first in the range.
+        DoubleArrayBuilder builder = new DoubleArrayBuilder(n * 4);
+        int[] fail = new int[16];
+        int[] output = new int[16];
+        Arrays.fill(output, -1);
+        IntList outputs = new IntList(n * 2);
+        IntList queue = new IntList(64);
+        queue.add(ROOT);
+        queue.add(0);
+        queue.add(n);
+        queue.add(0);
+        int[] labels = new int[MAX_LABEL];
+        int[] groups = new int[MAX_LABEL + 1];
+        for (int head = 0; head < queue.size(); head += 4) {
+            int slot = queue.get(head);
+            int lo = queue.get(head + 1);
+            int hi = queue.get(head + 2);
+            int depth = queue.get(head + 3);
+            if (lo < hi && encoded[order[lo]].length == depth) {
+                lo++;
+            }
+            if (lo == hi) {
+                continue;
+            }
+            int count = 0;
+            for (int i = lo; i < hi; i++) {
+                int label = (encoded[order[i]][depth] & 0xFF) + 1;
+                if (count == 0 || labels[count - 1] != label) {
+                    labels[count] = label;
+                    groups[count] = i;
+                    count++;
+                }
+            }
+            groups[count] = hi;
+            int b = builder.insert(slot, labels, count);
+            int f = fail[slot];
+            for (int i = 0; i < count; i++) {
+                int child = b + labels[i];
+                if (child >= fail.length) {
+                    int newLength = Math.max(child + 1, fail.length + (fail.length >> 1));
+                    int oldLength = output.length;
+                    fail = Arrays.copyOf(fail, newLength);
+                    output = Arrays.copyOf(output, newLength);
+                    Arrays.fill(output, oldLength, newLength, -1);
+                }
+                int childFail = slot != ROOT ? builder.failure(fail, f, labels[i]) : ROOT;
+                fail[child] = childFail;
+                int first = order[groups[i]];
+                output[child] = encoded[first].length == depth + 1
+                        ? DoubleArrayBuilder.addOutput(outputs, first, output[childFail])
+                        : output[childFail];
+                queue.add(child);
+                queue.add(groups[i]);
+                queue.add(groups[i + 1]);
+                queue.add(depth + 1);
+            }
+        }
+        this.base = builder.base(MAX_LABEL);
+        this.check = builder.check(MAX_LABEL);
+        this.fail = Arrays.copyOf(fail, check.length);
+        this.output = Arrays.copyOf(output, check.length);
+        if (output.length < check.length) {
+            Arrays.fill(this.output, output.length, check.length, -1);
+        }
+        this.outputs = outputs.toArray();
+    }
+
+    /**
+     * Scans the bytes and passes every match to the handler with the byte offsets.
+     * Apart from the handler, nothing is allocated.
+     *
+     * @param bytes   the UTF-8 bytes
+     * @param offset  the offset of the first byte to scan
+     * @param length  the number of bytes to scan
+     * @param handler the handler
+     * @return {@code true} if all the bytes have been scanned, {@code false} if the handler stopped the scan
+     */
+    public boolean scan(byte[] bytes, int offset, int length, MatchHandler handler) {
+        int state = ROOT;
+        for (int i = 0; i < length; i++) {
+            state = nextState(state, (bytes[offset + i] & 0xFF) + 1);
+            int o = output[state];
+            if (o < 0) {
+                continue;
+            }
+            for (int j = o + 1, end = o + outputs[o]; j <= end; j++) {
+                int id = outputs[j];
+                if (!handler.onMatch(i - byteLengths[id] + 1, i + 1, id)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    public boolean scan(byte[] bytes, MatchHandler handler) {
+        return scan(bytes, 0, bytes.length, handler);
+    }
+
+    /**
+     * Scans the bytes from the position to the limit of the buffer, which can be either heap or direct.
+     * The position of the buffer is not changed.
+     *
+     * @param buffer  the UTF-8 bytes
+     * @param handler the handler
+     * @return {@code true} if all the bytes have been scanned, {@code false} if the handler stopped the scan
+     */
+    public boolean scan(ByteBuffer buffer, MatchHandler handler) {
+        int offset = buffer.position();
+        int length = buffer.remaining();
+        if (buffer.hasArray()) {
+            return scan(buffer.array(), buffer.arrayOffset() + offset, length, handler);
+        }
+        int state = ROOT;
+        for (int i = 0; i < length; i++) {
+            state = nextState(state, (buffer.get(offset + i) & 0xFF) + 1);
+            int o = output[state];
+            if (o < 0) {
+                continue;
+            }
+            for (int j = o + 1, end = o + outputs[o]; j <= end; j++) {
+                int id = outputs[j];
+                if (!handler.onMatch(i - byteLengths[id] + 1, i + 1, id)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Scans the bytes and passes every match to the handler with both the byte offsets and the char offsets,
+     * the chars are counted from the leading bytes as the scan goes.
+     *
+     * @param bytes   the UTF-8 bytes
+     * @param offset  the offset of the first byte to scan
+     * @param length  the number of bytes to scan
+     * @param handler the handler
+     * @return {@code true} if all the bytes have been scanned, {@code false} if the handler stopped the scan
+     */
+    public boolean scan(byte[] bytes, int offset, int length, Utf8MatchHandler handler) {
+        int state = ROOT;
+        int chars = 0;
+        for (int i = 0; i < length; i++) {
+            byte b = bytes[offset + i];
+            chars += charCount(b);
+            state = nextState(state, (b & 0xFF) + 1);
+            int o = output[state];
+            if (o < 0) {
+                continue;
+            }
+            for (int j = o + 1, end = o + outputs[o]; j <= end; j++) {
+                int id = outputs[j];
+                if (!handler.onMatch(i - byteLengths[id] + 1, i + 1, chars - keywords[id].length(), chars, id)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    public boolean scan(byte[] bytes, Utf8MatchHandler handler) {
+        return scan(bytes, 0, bytes.length, handler);
+    }
+
+    /**
+     * @see #scan(ByteBuffer, MatchHandler)
+     * @see #scan(byte[], int, int, Utf8MatchHandler)
+     */
+    public boolean scan(ByteBuffer buffer, Utf8MatchHandler handler) {
+        int offset = buffer.position();
+        int length = buffer.remaining();
+        if (buffer.hasArray()) {
+            return scan(buffer.array(), buffer.arrayOffset() + offset, length, handler);
+        }
+        int state = ROOT;
+        int chars = 0;
+        for (int i = 0; i < length; i++) {
+            byte b = buffer.get(offset + i);
+            chars += charCount(b);
+            state = nextState(state, (b & 0xFF) + 1);
+            int o = output[state];
+            if (o < 0) {
+                continue;
+            }
+            for (int j = o + 1, end = o + outputs[o]; j <= end; j++) {
+                int id = outputs[j];
+                if (!handler.onMatch(i - byteLengths[id] + 1, i + 1, chars - keywords[id].length(), chars, id)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the keyword with the given id.
+     *
+     * @param id the id of the keyword, from {@code 0} to {@link #getMaxId()} inclusive
+     * @return the keyword, {@code null} if the id is not in use
+     */
+    public String getKeyword(int id) {
+        return keywords[id];
+    }
+
+    /**
+     * Returns the largest keyword id, {@code -1} if there is no keyword.
+     */
+    public int getMaxId() {
+        return keywords.length - 1;
+    }
+
+    /**
+     * Returns the number of keywords.
+     */
+    public int size() {
+        return size;
+    }
+
+    private int nextState(int state, int label) {
+        for (; ; ) {
+            int next = base[state] + label;
+            if (check[next] == state) {
+                return next;
+            } else if (state == ROOT) {
+                return ROOT;
+            }
+            state = fail[state];
+        }
+    }
+
+    /**
+     * Returns the number of UTF-16 chars started by the byte: none for a continuation byte,
+     * two for the leading byte of a supplementary character, otherwise one.
+     */
+    private static int charCount(byte b) {
+        if ((b & 0xC0) == 0x80) {
+            return 0;
+        }
+        return (b & 0xF8) == 0xF0 ? 2 : 1;
+    }
+
+    private static byte[] encode(CharsetEncoder encoder, String keyword) {
+        try {
+            ByteBuffer buffer = encoder.encode(CharBuffer.wrap(keyword));
+            return Arrays.copyOf(buffer.array(), buffer.limit());
+        } catch (CharacterCodingException e) {
+            throw new IllegalArgumentException("Keyword is not valid UTF-16, it has an unpaired surrogate: " + keyword, e);
+        }
+    }
+
+    private static int compareUnsigned(byte[] a, byte[] b) {
+        int len = Math.min(a.length, b.length);
+        for (int i = 0; i < len; i++) {
+            int c = (a[i] & 0xFF) - (b[i] & 0xFF);
+            if (c != 0) {
+                return c;
+            }
+        }
+        return a.length - b.length;
+    }
+}
@@ -0,0 +1,149 @@
+package io.leego.trie;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.logging.Logger;
+
+/**
+ * @author Leego Yih
+ */
+public class CodePointTrieTests {
+    static final Logger logger = Logger.getLogger(CodePointTrieTests.class.getName());
+
+    @Test
+    public void testScan() {
+        // U+20000 and U+2A6D6 are CJK Extension B characters.
+        String text = "ushers 😀😁 𠀀𪛖 雨疏风骤 😁";
+        Trie<?> trie = new Trie<>("he", "she", "hers", "😁", "😀😁", "𠀀𪛖", "风骤");
+        CodePointTrie codePoints = trie.compileCodePoints();
+        Assertions.assertEquals(7, codePoints.size());
+        Assertions.assertEquals(10, codePoints.getAlphabetSize());
+
+        List<String> actual = new ArrayList<>();
+        Assertions.assertTrue(codePoints.scan(text, (begin, end, codePointBegin, codePointEnd, id) -> actual.add(begin + ":" + end
+                + "|" + codePointBegin + ":" + codePointEnd + "=" + codePoints.getKeyword(id))));
+        log(actual);
+        List<String> expected = new ArrayList<>();
+        codePoints.findAll(text).forEach(emit -> expected.add(emit.getBegin() + ":" + emit.getEnd()
+                + "|" + text.codePointCount(0, emit.getBegin()) + ":" + text.codePointCount(0, emit.getEnd())
+                + "=" + emit.getKeyword()));
+        Assertions.assertEquals(expected, actual);
+        Assertions.assertEquals("1:4|1:4=she", actual.get(0));
+        Assertions.assertTrue(actual.contains("7:11|7:9=😀😁"));
+        Assertions.assertTrue(actual.contains("12:16|10:12=𠀀𪛖"));
+        Assertions.assertTrue(actual.contains("22:24|18:19=😁"));
+
+        Emit first = codePoints.findFirst(text);
+        Assertions.assertEquals("she", first.getKeyword());
+        int[] count = {0};
+        Assertions.assertFalse(codePoints.scan(text, (begin, end, codePointBegin, codePointEnd, id) -> ++count[0] < 2));
+        Assertions.assertEquals(2, count[0]);
+    }
+
+    @Test
+    public void testIgnoreCase() {
+        // U+10400 DESERET CAPITAL LETTER LONG I and U+10428 DESERET SMALL LETTER LONG I.
+        String upper = "𐐀";
+        String lower = "𐐨";
+        Trie<?> trie = new Trie<>("a" + lower, "Ω");
+        CodePointTrie codePoints = trie.compileCodePoints();
+        String text = "xA" + upper + "ω";
+        Assertions.assertTrue(codePoints.findAll(text).isEmpty());
+        Emits emits = codePoints.findAllIgnoreCase(text);
+        log(emits);
+        Assertions.assertEquals(2, emits.size());
+        Assertions.assertEquals("a" + lower, emits.get(0).getKeyword());
+        Assertions.assertEquals(1, emits.get(0).getBegin());
+        Assertions.assertEquals(4, emits.get(0).getEnd());
+        Assertions.assertEquals("Ω", emits.get(1).getKeyword());
+        // The chars are folded one at a time, the low surrogates have no case.
+        Assertions.assertEquals(1, trie.compile().findAllIgnoreCase(text).size());
+    }
+
+    @Test
+    public void testNormalizer() {
+        String upper = "𐐀";
+        String lower = "𐐨";
+        Trie<?> trie = new Trie<>().withNormalizer(CharNormalizer.caseFold());
+        trie.addKeywords("K" + upper);
+        CodePointTrie codePoints = trie.compileCodePoints();
+        Emits emits = codePoints.findAll("K" + lower + " k" + upper);
+        log(emits);
+        Assertions.assertEquals(2, emits.size());
+        Assertions.assertEquals(0, emits.get(0).getBegin());
+        Assertions.assertEquals(3, emits.get(0).getEnd());
+        Assertions.assertEquals(4, emits.get(1).getBegin());
+        Assertions.assertEquals(7, emits.get(1).getEnd());
+    }
+
+    @Test
+    public void testNormalizedDuplicates() {
+        // U+1D400 MATHEMATICAL BOLD CAPITAL A is normalized to 'A' by whole code points only,
+        // so the two keywords of the trie end at the same node.
+        Trie<?> trie = new Trie<>().withNormalizer(cp -> cp == 0x1D400 ? 'A' : cp).addKeywords("A", "𝐀", "AB");
+        CodePointTrie codePoints = trie.compileCodePoints();
+        Assertions.assertEquals(3, codePoints.size());
+        Emits emits = codePoints.findAll("A𝐀B");
+        log(emits);
+        Assertions.assertEquals("[0:1=A, 0:1=𝐀, 1:3=A, 1:3=𝐀, 1:4=AB]", emits.toString());
+    }
+
+    @Test
+    public void testRandom() {
+        Random random = new Random(17);
+        String alphabet = "abcAé甲乙😀𠀀";
+        for (int round = 0; round < 20; round++) {
+            Set<String> keywords = new HashSet<>();
+            for (int i = 0; i < 200; i++) {
+                keywords.add(randomString(random, alphabet, 1 + random.nextInt(5)));
+            }
+            Trie<?> trie = new Trie<>(keywords);
+            CompiledTrie compiled = trie.compile();
+            CodePointTrie codePoints = trie.compileCodePoints();
+            for (int i = 0; i < 10; i++) {
+                String text = randomString(random, alphabet + "xyz", 200);
+                List<String> expected = new ArrayList<>();
+                compiled.scan(text, (begin, end, id) -> expected.add(begin + ":" + end + "=" + id));
+                List<String> actual = new ArrayList<>();
+                codePoints.scan(text, (begin, end, codePointBegin, codePointEnd, id) -> actual.add(begin + ":" + end + "=" + id));
+                Assertions.assertEquals(expected, actual);
+                Assertions.assertEquals(compiled.findAllIgnoreCase(text).toString(), codePoints.findAllIgnoreCase(text).toString());
+            }
+        }
+    }
+
+    @Test
+    public void testEmpty() {
+        CodePointTrie codePoints = new Trie<>().compileCodePoints();
+        Assertions.assertEquals(0, codePoints.size());
+        Assertions.assertEquals(0, codePoints.getAlphabetSize());
+        Assertions.assertTrue(codePoints.findAll("text 😀").isEmpty());
+        Assertions.assertNull(codePoints.findFirst("text"));
+    }
+
+    public String randomString(Random random, String alphabet, int length) {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            // Keeps the surrogate pairs together.
+            int j = random.nextInt(alphabet.length());
+            if (Character.isLowSurrogate(alphabet.charAt(j))) {
+                j--;
+            }
+            sb.append(alphabet.charAt(j));
+            if (Character.isHighSurrogate(alphabet.charAt(j))) {
+                sb.append(alphabet.charAt(j + 1));
+            }
+        }
+        return sb.toString();
+    }
+
+    public void log(Object object) {
+        logger.info(String.valueOf(object));
+    }
+}
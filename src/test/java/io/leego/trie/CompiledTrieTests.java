@@ -0,0 +1,563 @@
+package io.leego.trie;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.logging.Logger;
+
+/**
+ * @author Leego Yih
+ */
+public class CompiledTrieTests {
+    static final Logger logger = Logger.getLogger(CompiledTrieTests.class.getName());
+
+    @Test
+    public void testFindAll() {
+        String text = "昨夜雨疏风骤，浓睡不消残酒。试问卷帘人，却道海棠依旧。知否，知否？应是绿肥红瘦。";
+        Trie<?> trie = new Trie<>("雨疏", "风骤", "残酒", "卷帘人", "知否");
+        CompiledTrie compiled = trie.compile();
+        Emits emits = compiled.findAll(text);
+        log(emits);
+        equalsEmits(trie.findAll(text), emits);
+        Assertions.assertEquals(6, emits.size());
+        Assertions.assertEquals(5, compiled.size());
+    }
+
+    @Test
+    public void testFindFirst() {
+        String text = "昨夜雨疏风骤，浓睡不消残酒。试问卷帘人，却道海棠依旧。知否，知否？应是绿肥红瘦。";
+        Trie<?> trie = new Trie<>("雨疏", "风骤", "残酒", "卷帘人", "知否");
+        Emit emit = trie.compile().findFirst(text);
+        log(emit);
+        Assertions.assertEquals(new Emit(2, 4, "雨疏"), emit);
+        Assertions.assertNull(trie.compile().findFirst("绿肥红瘦"));
+    }
+
+    @Test
+    public void testIgnoreCase() {
+        String text = "TurninG OnCe AgAiN BÖRKÜ, Poetry is what gets lost in translation.";
+        Trie<?> trie = new Trie<>("turning", "once", "again", "börkü", "poetry", "TRANSLATION");
+        CompiledTrie compiled = trie.compile();
+        log(compiled.findAllIgnoreCase(text));
+        equalsEmits(trie.findAllIgnoreCase(text), compiled.findAllIgnoreCase(text));
+        equalsEmits(trie.findAll(text), compiled.findAll(text));
+        Assertions.assertEquals(trie.findFirstIgnoreCase(text), compiled.findFirstIgnoreCase(text));
+    }
+
+    @Test
+    public void testOverlaps() {
+        String text = "ushers a123,456b";
+        Trie<?> trie = new Trie<>("he", "she", "his", "hers", "123", "12", "23", "45", "56");
+        CompiledTrie compiled = trie.compile();
+        Emits emits = compiled.findAll(text);
+        log(emits);
+        equalsEmits(trie.findAll(text), emits);
+        emits.removeOverlaps();
+        Emits expected = trie.findAll(text);
+        expected.removeOverlaps();
+        equalsEmits(expected, emits);
+    }
+
+    @Test
+    public void testScan() {
+        String text = "ushers";
+        CompiledTrie compiled = new Trie<>("he", "she", "his", "hers").compile();
+        StringBuilder sb = new StringBuilder();
+        boolean completed = compiled.scan(text, (begin, end, id) -> {
+            sb.append(begin).append(':').append(end).append('=').append(compiled.getKeyword(id)).append(' ');
+            return true;
+        });
+        Assertions.assertTrue(completed);
+        Assertions.assertEquals("1:4=she 2:4=he 2:6=hers ", sb.toString());
+        int[] count = {0};
+        completed = compiled.scan(text, (begin, end, id) -> ++count[0] < 2);
+        Assertions.assertFalse(completed);
+        Assertions.assertEquals(2, count[0]);
+    }
+
+    @Test
+    public void testScanAllocation() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Assumptions.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) bean;
+        Assumptions.assumeTrue(threadBean.isThreadAllocatedMemorySupported());
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+        String text = "昨夜雨疏风骤，浓睡不消残酒。试问卷帘人，却道海棠依旧。知否，知否？应是绿肥红瘦。Poetry is what gets lost in translation.";
+        CompiledTrie compiled = new Trie<>("雨疏", "风骤", "残酒", "卷帘人", "知否", "poetry", "TRANSLATION").compile();
+        Counter counter = new Counter();
+        for (int i = 0; i < 20000; i++) {
+            compiled.scan(text, counter);
+            compiled.scanIgnoreCase(text, counter);
+        }
+        long threadId = Thread.currentThread().getId();
+        long before = threadBean.getThreadAllocatedBytes(threadId);
+        int operations = 100000;
+        for (int i = 0; i < operations; i++) {
+            compiled.scan(text, counter);
+            compiled.scanIgnoreCase(text, counter);
+        }
+        long allocated = threadBean.getThreadAllocatedBytes(threadId) - before;
+        log("allocated " + allocated + " bytes for " + operations + " operations, matches: " + counter.count);
+        // Leaves room for the allocations of the measurement itself.
+        Assertions.assertTrue(allocated < 4096, "allocated " + allocated + " bytes");
+    }
+
+    @Test
+    public void testScanStream() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 3000; i++) {
+            sb.append("昨夜雨疏风骤，").append(i).append(" ushers ");
+        }
+        String text = sb.toString();
+        CompiledTrie compiled = new Trie<>("雨疏", "风骤", "he", "she", "hers", "1234").compile();
+        Emits expected = compiled.findAll(text);
+        // A reader which returns at most 3 chars at a time, so most matches cross the boundaries.
+        Reader reader = new StringReader(text) {
+            @Override
+            public int read(char[] cbuf, int off, int len) throws IOException {
+                return super.read(cbuf, off, Math.min(len, 3));
+            }
+        };
+        List<Emit> emits = new ArrayList<>();
+        Assertions.assertTrue(compiled.scan(reader, (begin, end, id) ->
+                emits.add(new Emit((int) begin, (int) end, compiled.getKeyword(id)))));
+        Assertions.assertEquals(expected, emits);
+
+        emits.clear();
+        ReadableByteChannel channel = Channels.newChannel(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)));
+        Assertions.assertTrue(compiled.scan(channel, StandardCharsets.UTF_8, (begin, end, id) ->
+                emits.add(new Emit((int) begin, (int) end, compiled.getKeyword(id)))));
+        Assertions.assertEquals(expected, emits);
+
+        emits.clear();
+        Assertions.assertFalse(compiled.scan(new StringReader(text), (begin, end, id) ->
+                emits.add(new Emit((int) begin, (int) end, compiled.getKeyword(id))) && emits.size() < 10));
+        Assertions.assertEquals(expected.subList(0, 10), emits);
+    }
+
+    @Test
+    public void testMapped(@TempDir Path dir) {
+        String text = "TurninG OnCe AgAiN BÖRKÜ, ushers 昨夜雨疏风骤";
+        CompiledTrie compiled = new Trie<>("turning", "once", "börkü", "he", "she", "hers", "雨疏", "风骤").compile();
+        Path path = dir.resolve("trie.bin");
+        compiled.writeTo(path);
+        MappedTrie mapped = MappedTrie.open(path);
+        Assertions.assertEquals(compiled.size(), mapped.size());
+        equalsEmits(compiled.findAll(text), mapped.findAll(text));
+        equalsEmits(compiled.findAllIgnoreCase(text), mapped.findAllIgnoreCase(text));
+        Assertions.assertEquals(compiled.findFirst(text), mapped.findFirst(text));
+        Assertions.assertEquals(compiled.findFirst(text).getId(), mapped.findFirst(text).getId());
+        Emits expectedEmits = compiled.findAllIgnoreCase(text);
+        Emits mappedEmits = mapped.findAllIgnoreCase(text);
+        for (int i = 0; i < expectedEmits.size(); i++) {
+            Assertions.assertEquals(expectedEmits.get(i).getId(), mappedEmits.get(i).getId());
+            Assertions.assertTrue(mappedEmits.get(i).getId() >= 0);
+        }
+        StringBuilder sb = new StringBuilder();
+        mapped.scan(text, (begin, end, id) -> sb.append(mapped.getKeyword(id)).append(' ').length() > 0);
+        Assertions.assertEquals("she he hers 雨疏 风骤 ", sb.toString());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new MappedTrie(ByteBuffer.allocate(64)));
+    }
+
+    @Test
+    public void testMappedSurrogates(@TempDir Path dir) {
+        // The Deseret letters are folded by their low surrogates.
+        String text = "\uD801\uDC00 \uD801\uDC28 \uD801\uDC01";
+        CompiledTrie compiled = new Trie<>()
+                .withNormalizer(CharNormalizer.caseFold())
+                .addKeywords("\uD801\uDC28", "\uD801\uDC29")
+                .compile();
+        Path path = dir.resolve("trie.bin");
+        compiled.writeTo(path);
+        MappedTrie mapped = MappedTrie.open(path);
+        Assertions.assertEquals(3, compiled.findAll(text).size());
+        equalsEmits(compiled.findAll(text), mapped.findAll(text));
+        equalsEmits(compiled.findAllIgnoreCase(text), mapped.findAllIgnoreCase(text));
+        Assertions.assertEquals(compiled.findFirst(text), mapped.findFirst(text));
+    }
+
+    @Test
+    public void testMappedSize(@TempDir Path dir) {
+        CompiledTrie compiled = new Trie<>("he", "she", "hers", "his").removeKeywords("she", "his").compile();
+        Path path = dir.resolve("trie.bin");
+        compiled.writeTo(path);
+        MappedTrie mapped = MappedTrie.open(path);
+        Assertions.assertEquals(compiled.size(), mapped.size());
+        Assertions.assertEquals(compiled.getMaxId(), mapped.getMaxId());
+    }
+
+    @Test
+    public void testMappedCorrupt(@TempDir Path dir) throws IOException {
+        Path path = dir.resolve("trie.bin");
+        new Trie<>("he", "she", "hers", "雨疏").compile().writeTo(path);
+        byte[] bytes = Files.readAllBytes(path);
+        Files.write(path, Arrays.copyOf(bytes, bytes.length - 2));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> MappedTrie.open(path));
+        // The lengths of the codes and the fold codes add up to a negative int.
+        ByteBuffer corrupt = ByteBuffer.wrap(bytes.clone()).order(MappedTrie.ORDER);
+        corrupt.putInt(12, Integer.MAX_VALUE).putInt(16, Integer.MAX_VALUE);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new MappedTrie(corrupt));
+        ByteBuffer negative = ByteBuffer.wrap(bytes.clone()).order(MappedTrie.ORDER);
+        negative.putInt(24, -1);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new MappedTrie(negative));
+        ByteBuffer surrogates = ByteBuffer.wrap(bytes.clone()).order(MappedTrie.ORDER);
+        surrogates.putInt(36, -1);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new MappedTrie(surrogates));
+        ByteBuffer offsets = ByteBuffer.wrap(bytes.clone()).order(MappedTrie.ORDER);
+        // The last keyword offset, just before the keyword chars.
+        offsets.putInt(bytes.length - 2 * offsets.getInt(32) - 4, Integer.MAX_VALUE);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new MappedTrie(offsets));
+    }
+
+    @Test
+    public void testFindAllParallel() {
+        Random random = new Random(17);
+        Set<String> keywords = new HashSet<>();
+        for (int i = 0; i < 1000; i++) {
+            keywords.add(randomString(random, "abcdAB", 1 + random.nextInt(12)));
+        }
+        CompiledTrie compiled = new Trie<>(keywords).compile();
+        String text = randomString(random, "abcdAB", 300000);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            equalsEmits(compiled.findAll(text), compiled.findAllParallel(text, pool));
+            equalsEmits(compiled.findAllIgnoreCase(text), compiled.findAllParallel(text, true, pool));
+            equalsEmits(compiled.findAll("abcd"), compiled.findAllParallel("abcd", pool));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testBatch() {
+        Random random = new Random(23);
+        CompiledTrie compiled = new Trie<>("he", "she", "his", "hers", "Ab", "abc").compile();
+        List<String> texts = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            texts.add(randomString(random, "abcehrsiAB", random.nextInt(20)));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            for (boolean ignoreCase : new boolean[]{false, true}) {
+                BatchEmits batch = compiled.findAll(texts, ignoreCase);
+                BatchEmits parallel = compiled.findAll(texts, ignoreCase, executor);
+                Assertions.assertEquals(texts.size(), batch.getDocumentCount());
+                Assertions.assertEquals(texts.size(), parallel.getDocumentCount());
+                int index = 0;
+                for (int d = 0; d < texts.size(); d++) {
+                    Emits emits = compiled.findAll(texts.get(d), ignoreCase);
+                    Assertions.assertEquals(index, batch.getOffset(d));
+                    Assertions.assertEquals(emits.size(), batch.count(d));
+                    Assertions.assertEquals(emits.size(), parallel.count(d));
+                    for (Emit emit : emits) {
+                        Assertions.assertEquals(d, batch.getDocument(index));
+                        Assertions.assertEquals(emit, batch.get(index));
+                        Assertions.assertEquals(emit.getKeyword(), compiled.getKeyword(parallel.getKeywordId(index)));
+                        Assertions.assertEquals(emit.getBegin(), parallel.getBegin(index));
+                        Assertions.assertEquals(emit.getEnd(), parallel.getEnd(index));
+                        index++;
+                    }
+                }
+                Assertions.assertEquals(index, batch.size());
+                Assertions.assertEquals(index, parallel.size());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        Assertions.assertTrue(compiled.findAll(new ArrayList<String>()).isEmpty());
+    }
+
+    @Test
+    public void testMatchKind() {
+        CompiledTrie compiled = new Trie<>("ab", "abcd", "bc", "cde", "abcdefgh").compile();
+        Assertions.assertEquals(Arrays.asList(new Emit(0, 2, "ab")), compiled.findAll("abx", MatchKind.LEFTMOST_LONGEST));
+        Assertions.assertEquals(Arrays.asList(new Emit(0, 2, "ab"), new Emit(2, 5, "cde")),
+                compiled.findAll("abcde", MatchKind.LEFTMOST_FIRST));
+        Assertions.assertEquals(Arrays.asList(new Emit(0, 4, "abcd")),
+                compiled.findAll("abcde", MatchKind.LEFTMOST_LONGEST));
+
+        Random random = new Random(29);
+        for (int round = 0; round < 50; round++) {
+            Set<String> keywords = new HashSet<>();
+            for (int i = 0; i < 30; i++) {
+                keywords.add(randomString(random, "abc", 1 + random.nextInt(6)));
+            }
+            CompiledTrie trie = new Trie<>(keywords).compile();
+            for (int i = 0; i < 10; i++) {
+                String text = randomString(random, "abcd", 100);
+                Emits longest = trie.findAll(text);
+                longest.removeOverlaps();
+                Assertions.assertEquals(longest, trie.findAll(text, MatchKind.LEFTMOST_LONGEST));
+                Assertions.assertEquals(leftmostFirst(trie, text), trie.findAll(text, MatchKind.LEFTMOST_FIRST));
+                Assertions.assertEquals(trie.findAll(text), trie.findAll(text, MatchKind.STANDARD));
+                List<Emit> streamed = new ArrayList<>();
+                trie.scan(new StringReader(text), false, MatchKind.LEFTMOST_LONGEST, (begin, end, id) ->
+                        streamed.add(new Emit((int) begin, (int) end, trie.getKeyword(id))));
+                Assertions.assertEquals(longest, streamed);
+            }
+        }
+    }
+
+    private List<Emit> leftmostFirst(CompiledTrie trie, String text) {
+        List<int[]> matches = new ArrayList<>();
+        trie.scan(text, (begin, end, id) -> matches.add(new int[]{begin, end, id}));
+        matches.sort((a, b) -> a[0] != b[0] ? Integer.compare(a[0], b[0]) : Integer.compare(a[2], b[2]));
+        List<Emit> emits = new ArrayList<>();
+        int last = 0;
+        for (int[] match : matches) {
+            if (match[0] >= last) {
+                emits.add(new Emit(match[0], match[1], trie.getKeyword(match[2])));
+                last = match[1];
+            }
+        }
+        return emits;
+    }
+
+    @Test
+    public void testReplace() {
+        String text = "ushers 昨夜雨疏风骤，abcde";
+        CompiledTrie compiled = new Trie<>("he", "she", "hers", "雨疏", "风骤", "ab", "abcd", "cde").compile();
+        Emits emits = compiled.findAll(text);
+        Assertions.assertEquals(emits.replaceWith("*"), compiled.replace(text, false, MatchKind.STANDARD, Replacer.mask("*")));
+        Assertions.assertEquals(emits.replaceWith("@#$%"), compiled.replace(text, false, MatchKind.STANDARD, Replacer.mask("@#$%")));
+        Assertions.assertEquals("u<she>rs 昨夜<雨疏><风骤>，<abcd>e",
+                compiled.replace(text, false, MatchKind.LEFTMOST_LONGEST, Replacer.with(id -> "<" + compiled.getKeyword(id) + ">")));
+        Assertions.assertEquals("u<she>rs 昨夜<雨疏><风骤>，<ab><cde>",
+                compiled.replace(text, false, MatchKind.LEFTMOST_FIRST, Replacer.with(id -> "<" + compiled.getKeyword(id) + ">")));
+
+        Random random = new Random(31);
+        for (int round = 0; round < 20; round++) {
+            Set<String> keywords = new HashSet<>();
+            for (int i = 0; i < 30; i++) {
+                keywords.add(randomString(random, "abc", 1 + random.nextInt(6)));
+            }
+            CompiledTrie trie = new Trie<>(keywords).compile();
+            String input = randomString(random, "abcd", 20000);
+            for (MatchKind kind : MatchKind.values()) {
+                Replacer replacer = Replacer.with(id -> "<" + trie.getKeyword(id) + ">");
+                String expected = trie.replace(input, false, kind, replacer);
+                // A reader which returns at most 7 chars at a time.
+                Reader reader = new StringReader(input) {
+                    @Override
+                    public int read(char[] cbuf, int off, int len) throws IOException {
+                        return super.read(cbuf, off, Math.min(len, 7));
+                    }
+                };
+                StringBuilder sb = new StringBuilder();
+                trie.replace(reader, false, kind, replacer, sb);
+                Assertions.assertEquals(expected, sb.toString());
+            }
+            Emits all = trie.findAll(input);
+            Assertions.assertEquals(all.replaceWith("#$"), trie.replace(input, false, MatchKind.STANDARD, Replacer.mask("#$")));
+            Emits longest = trie.findAll(input, MatchKind.LEFTMOST_LONGEST);
+            StringBuilder sb = new StringBuilder();
+            int index = 0;
+            for (Emit emit : longest) {
+                sb.append(input, index, emit.getBegin()).append('[').append(emit.getKeyword()).append(']');
+                index = emit.getEnd();
+            }
+            sb.append(input, index, input.length());
+            Assertions.assertEquals(sb.toString(), trie.replace(input, false, MatchKind.LEFTMOST_LONGEST,
+                    Replacer.with(id -> "[" + trie.getKeyword(id) + "]")));
+        }
+    }
+
+    @Test
+    public void testDeterministic() {
+        CompileOptions options = new CompileOptions().withDeterministic(true);
+        Assertions.assertFalse(new Trie<>("he", "she").compile().isDeterministic());
+        Assertions.assertTrue(new Trie<>("he", "she").compile(options).isDeterministic());
+        Assertions.assertTrue(new Trie<>().compile(options).findAll("text").isEmpty());
+        // The failures are followed if the table exceeds the cap.
+        CompiledTrie capped = new Trie<>("he", "she").compile(new CompileOptions().withDeterministic(true).withMaxDfaBytes(16));
+        Assertions.assertFalse(capped.isDeterministic());
+        Assertions.assertEquals(2, capped.findAll("she").size());
+
+        Random random = new Random(37);
+        String alphabet = "abcdeABCDE甲乙丙";
+        for (int round = 0; round < 20; round++) {
+            Set<String> keywords = new HashSet<>();
+            for (int i = 0; i < 200; i++) {
+                keywords.add(randomString(random, alphabet, 1 + random.nextInt(6)));
+            }
+            Trie<?> trie = new Trie<>(keywords);
+            CompiledTrie expected = trie.compile();
+            CompiledTrie dfa = trie.compile(options);
+            Assertions.assertTrue(dfa.isDeterministic());
+            for (int i = 0; i < 10; i++) {
+                String text = randomString(random, alphabet + "xyz", 300);
+                Assertions.assertEquals(expected.findAll(text), dfa.findAll(text));
+                Assertions.assertEquals(expected.findAllIgnoreCase(text), dfa.findAllIgnoreCase(text));
+                Assertions.assertEquals(expected.findFirst(text), dfa.findFirst(text));
+                Assertions.assertEquals(expected.findAll(text, MatchKind.LEFTMOST_LONGEST), dfa.findAll(text, MatchKind.LEFTMOST_LONGEST));
+            }
+        }
+
+        // The options are kept by the later snapshots.
+        ConcurrentTrie<Object> concurrent = new ConcurrentTrie<>("he", "she").withOptions(options);
+        concurrent.addKeywords("hers");
+        Assertions.assertTrue(concurrent.snapshot().isDeterministic());
+        Assertions.assertEquals(3, concurrent.findAll("ushers").size());
+    }
+
+    @Test
+    public void testPrefilter() throws IOException {
+        Assertions.assertTrue(new CompileOptions().isPrefilter());
+        CompileOptions disabled = new CompileOptions().withPrefilter(false);
+        Random random = new Random(41);
+        String alphabet = "abcdeABCDE甲乙丙\uD83D\uDE00";
+        for (int round = 0; round < 20; round++) {
+            Set<String> keywords = new HashSet<>();
+            for (int i = 0; i < 50; i++) {
+                keywords.add(randomString(random, alphabet, 1 + random.nextInt(6)));
+            }
+            Trie<?> trie = new Trie<>(keywords);
+            CompiledTrie expected = trie.compile(disabled);
+            CompiledTrie prefiltered = trie.compile();
+            for (int i = 0; i < 10; i++) {
+                // Most of the text cannot begin a match, so the prefilter skips long spans.
+                String text = randomString(random, alphabet + "xyzuvw", 300);
+                Assertions.assertEquals(expected.findAll(text), prefiltered.findAll(text));
+                Assertions.assertEquals(expected.findAllIgnoreCase(text), prefiltered.findAllIgnoreCase(text));
+                Assertions.assertEquals(expected.findFirst(text), prefiltered.findFirst(text));
+                Assertions.assertEquals(expected.findAllParallel(text, false, ForkJoinPool.commonPool()), prefiltered.findAllParallel(text, false, ForkJoinPool.commonPool()));
+                Assertions.assertEquals(scanAll(expected, text), scanAll(prefiltered, text));
+                BatchEmits batch = prefiltered.findAll(Arrays.asList(text, text));
+                Assertions.assertEquals(expected.findAll(text).size(), batch.count(1));
+                Assertions.assertEquals(expected.findAll(Arrays.asList(text, text)).size(), batch.size());
+            }
+        }
+        // The keywords of a single case, the text of the opposite case is above the keyword chars.
+        for (String keyword : new String[]{"A", "AB", "ΣΩ", "Ab"}) {
+            Trie<Object> single = new Trie<>(keyword);
+            String text = "x" + keyword.toLowerCase() + "y" + keyword.toUpperCase();
+            Assertions.assertEquals(single.compile(disabled).findAllIgnoreCase(text), single.compile().findAllIgnoreCase(text));
+            Assertions.assertEquals(single.compile(disabled).findFirstIgnoreCase(text), single.compile().findFirstIgnoreCase(text));
+            Assertions.assertEquals(2, single.compile().findAllIgnoreCase(text).size());
+        }
+        Assertions.assertEquals("[1:2=A]", new Trie<>("A").compile().findAllIgnoreCase("xa").toString());
+        // The low surrogates are never skipped when they are normalized.
+        Trie<?> trie = new Trie<>().withNormalizer(CharNormalizer.caseFold()).addKeywords("\uD801\uDC28");
+        Assertions.assertEquals(2, trie.compile().findAll("x\uD801\uDC00x\uD801\uDC28").size());
+    }
+
+    private static List<Long> scanAll(CompiledTrie trie, String text) throws IOException {
+        List<Long> matches = new ArrayList<>();
+        trie.scan(new StringReader(text), (begin, end, keywordId) -> {
+            matches.add(begin);
+            matches.add(end);
+            matches.add((long) keywordId);
+            return true;
+        });
+        return matches;
+    }
+
+    @Test
+    public void testLimit() {
+        CompiledTrie trie = new Trie<>("a", "aa", "aaa", "b").compile();
+        String text = "aaaaaaaaaa";
+        Emits all = trie.findAll(text);
+        Assertions.assertEquals(27, all.size());
+        Assertions.assertEquals(all.subList(0, 5), trie.findAll(text, 5));
+        Assertions.assertEquals(all, trie.findAll(text, 100));
+        Assertions.assertTrue(trie.findAll(text, 0).isEmpty());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> trie.findAll(text, -1));
+        Assertions.assertEquals(1, trie.findAll("AAA", true, 1).size());
+
+        int[] counts = new int[trie.getMaxId() + 1];
+        Assertions.assertEquals(27, trie.count(text, counts));
+        Assertions.assertArrayEquals(new int[]{10, 9, 8, 0}, counts);
+        // The counts are accumulated.
+        Assertions.assertEquals(2, trie.count("AB", true, counts));
+        Assertions.assertArrayEquals(new int[]{11, 9, 8, 1}, counts);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> trie.count(text, new int[1]));
+
+        int[] begins = new int[trie.getMaxId() + 1];
+        Assertions.assertEquals(3, trie.findFirstOfEach(text, begins));
+        Assertions.assertArrayEquals(new int[]{0, 0, 0, -1}, begins);
+        Assertions.assertEquals(3, trie.findLastOfEach(text, begins));
+        Assertions.assertArrayEquals(new int[]{9, 8, 7, -1}, begins);
+        Assertions.assertEquals(4, trie.findFirstOfEach("xbaaa", begins));
+        Assertions.assertArrayEquals(new int[]{2, 2, 2, 1}, begins);
+        log(Arrays.toString(begins));
+    }
+
+    @Test
+    public void testEmpty() {
+        CompiledTrie compiled = new Trie<>().compile();
+        Assertions.assertTrue(compiled.findAll("text").isEmpty());
+        Assertions.assertNull(compiled.findFirst("text"));
+        Assertions.assertEquals(0, compiled.size());
+    }
+
+    @Test
+    public void testRandom() {
+        Random random = new Random(7);
+        String alphabet = "abcdeABCDE甲乙丙";
+        for (int round = 0; round < 20; round++) {
+            Set<String> keywords = new HashSet<>();
+            for (int i = 0; i < 200; i++) {
+                keywords.add(randomString(random, alphabet, 1 + random.nextInt(6)));
+            }
+            Trie<?> trie = new Trie<>(keywords);
+            CompiledTrie compiled = trie.compile();
+            for (int i = 0; i < 10; i++) {
+                String text = randomString(random, alphabet + "xyz", 200);
+                equalsEmits(trie.findAll(text), compiled.findAll(text));
+                equalsEmits(trie.findAllIgnoreCase(text), compiled.findAllIgnoreCase(text));
+                Assertions.assertEquals(trie.findFirst(text), compiled.findFirst(text));
+            }
+        }
+    }
+
+    static class Counter implements MatchHandler {
+        long count;
+
+        @Override
+        public boolean onMatch(int begin, int end, int keywordId) {
+            count++;
+            return true;
+        }
+    }
+
+    public String randomString(Random random, String alphabet, int length) {
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = alphabet.charAt(random.nextInt(alphabet.length()));
+        }
+        return new String(chars);
+    }
+
+    public void equalsEmits(Emits expected, Emits actual) {
+        Assertions.assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Assertions.assertEquals(expected.get(i), actual.get(i));
+        }
+    }
+
+    public void log(Object object) {
+        logger.info(String.valueOf(object));
+    }
+}
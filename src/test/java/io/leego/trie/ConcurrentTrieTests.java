@@ -0,0 +1,111 @@
+package io.leego.trie;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * @author Leego Yih
+ */
+public class ConcurrentTrieTests {
+
+    @Test
+    public void testUpdate() {
+        ConcurrentTrie<Object> trie = new ConcurrentTrie<>("he", "she");
+        CompiledTrie snapshot = trie.snapshot();
+        long version = trie.getVersion();
+        trie.addKeywords("hers").removeKeywords("he");
+        Assertions.assertTrue(snapshot.findAll("ushers").contains(new Emit(2, 4, "he")));
+        Assertions.assertFalse(snapshot.findAll("ushers").contains(new Emit(2, 6, "hers")));
+        Assertions.assertFalse(trie.findAll("ushers").contains(new Emit(2, 4, "he")));
+        Assertions.assertTrue(trie.findAll("ushers").contains(new Emit(2, 6, "hers")));
+        Assertions.assertEquals(new Emit(1, 4, "she"), trie.findFirst("ushers"));
+        Assertions.assertTrue(trie.getVersion() > version);
+
+        // Nothing changes, nothing is published.
+        snapshot = trie.snapshot();
+        trie.addKeywords("she").removeKeywords("unknown");
+        Assertions.assertSame(snapshot, trie.snapshot());
+    }
+
+    @Test
+    public void testConsistentSnapshot() throws Exception {
+        ConcurrentTrie<Object> trie = new ConcurrentTrie<>();
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            sb.append("<a").append(i).append("> <b").append(i).append("> ");
+        }
+        String text = sb.toString();
+        AtomicBoolean running = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            futures.add(executor.submit(() -> {
+                while (running.get()) {
+                    int a = 0, b = 0;
+                    for (Emit emit : trie.findAll(text)) {
+                        if (emit.getKeyword().charAt(1) == 'a') {
+                            a++;
+                        } else {
+                            b++;
+                        }
+                    }
+                    // The pairs are published together, so a search never sees half of them.
+                    Assertions.assertEquals(a, b);
+                }
+            }));
+        }
+        for (int i = 0; i < 200; i++) {
+            String a = "<a" + i + ">", b = "<b" + i + ">";
+            trie.update(t -> t.addKeywords(a).addKeywords(b));
+        }
+        running.set(false);
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        Assertions.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        Assertions.assertEquals(400, trie.findAll(text).size());
+    }
+
+    @Test
+    public void testCache() {
+        ResultCache cache = new ResultCache(100, 10);
+        Assertions.assertEquals(128, cache.capacity());
+        ConcurrentTrie<Object> trie = new ConcurrentTrie<>("he", "she").withCache(cache);
+        Assertions.assertEquals(2, trie.findAll("ushers").size());
+        Assertions.assertEquals(trie.snapshot().findAll("ushers"), trie.findAll("ushers"));
+        Assertions.assertEquals(1, cache.getHitCount());
+        Assertions.assertEquals(1, cache.getMissCount());
+        Assertions.assertEquals(new Emit(1, 4, "she"), trie.findFirst("ushers"));
+        Assertions.assertEquals(new Emit(1, 4, "she"), trie.findFirst("ushers"));
+        Assertions.assertNull(trie.findFirst("hi"));
+        Assertions.assertNull(trie.findFirst("hi"));
+        Assertions.assertEquals(3, cache.getHitCount());
+        Assertions.assertEquals(0.5, cache.getHitRate());
+        // The cases are cached apart.
+        Assertions.assertTrue(trie.findAll("USHERS").isEmpty());
+        Assertions.assertEquals(2, trie.findAllIgnoreCase("USHERS").size());
+
+        // The entries expire once the keywords change.
+        trie.addKeywords("hers");
+        Assertions.assertEquals(3, trie.findAll("ushers").size());
+        Assertions.assertEquals(3, trie.findAllIgnoreCase("USHERS").size());
+        Assertions.assertEquals(3, cache.getHitCount());
+
+        // The long texts and the mutable ones are not cached.
+        cache.resetStats();
+        String text = "ushers ushers";
+        Assertions.assertEquals(6, trie.findAll(text).size());
+        Assertions.assertEquals(3, trie.findAll(new StringBuilder("ushers")).size());
+        Assertions.assertEquals(0, cache.getHitCount() + cache.getMissCount());
+    }
+}
+
@@ -0,0 +1,133 @@
+package io.leego.trie;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * @author Leego Yih
+ */
+public class TrieRegistryTests {
+    static final Logger logger = Logger.getLogger(TrieRegistryTests.class.getName());
+
+    @Test
+    public void testOverlay() {
+        Map<String, Map<String, String>> tenants = new HashMap<>();
+        tenants.put("a", new HashMap<>());
+        tenants.get("a").put("hers", "a");
+        tenants.get("a").put("he", "a");
+        tenants.put("b", new HashMap<>());
+        tenants.get("b").put("us", "b");
+        AtomicInteger loads = new AtomicInteger();
+        Trie<String> base = new Trie<String>().addKeyword("he", "base").addKeyword("she", "base");
+        TrieRegistry<String> registry = new TrieRegistry<>(base, 2, name -> {
+            loads.incrementAndGet();
+            return tenants.get(name);
+        });
+
+        OverlayTrie a = registry.get("a");
+        OverlayTrie b = registry.get("b");
+        // The base is compiled once and shared.
+        Assertions.assertSame(a.getBase(), b.getBase());
+        Assertions.assertSame(registry.getBase(), a.getBase());
+        Emits emits = a.findAll("ushers");
+        log(emits);
+        // The keywords of the base are not added to the overlay again.
+        Assertions.assertEquals(Arrays.asList(new Emit(1, 4, "she"), new Emit(2, 4, "he"), new Emit(2, 6, "hers")), emits);
+        Assertions.assertEquals("base", emits.get(1).getPayload());
+        Assertions.assertEquals("a", emits.get(2).getPayload());
+        Assertions.assertEquals(3, a.size());
+        Assertions.assertEquals("hers", a.getKeyword(emits.get(2).getId()));
+        Assertions.assertEquals(Arrays.asList(new Emit(0, 2, "us"), new Emit(1, 4, "she"), new Emit(2, 4, "he")), b.findAll("ushers"));
+        Assertions.assertEquals(new Emit(0, 2, "us"), b.findFirst("USHERS", true));
+        Assertions.assertNull(registry.get("unknown").findFirst("us"));
+
+        // The least recently used overlay is evicted.
+        Assertions.assertEquals(3, loads.get());
+        Assertions.assertNull(registry.getIfPresent("a"));
+        Assertions.assertSame(b, registry.get("b"));
+        Assertions.assertEquals(2, registry.size());
+        Assertions.assertEquals(3, loads.get());
+
+        // The overlays are loaded again after a change.
+        tenants.get("b").put("ers", "b");
+        registry.invalidate("b");
+        Assertions.assertEquals(4, registry.get("b").findAll("ushers").size());
+        registry.setBase(new Trie<>(TrieRegistry.withoutPayloads(new HashSet<>(Arrays.asList("us", "hers")))));
+        Assertions.assertEquals(0, registry.size());
+        Assertions.assertEquals(Arrays.asList(new Emit(0, 2, "us"), new Emit(2, 6, "hers"), new Emit(3, 6, "ers")), registry.get("b").findAll("ushers"));
+    }
+
+    @Test
+    public void testSinglePass() {
+        Trie<Object> base = new Trie<>(new HashSet<>(Arrays.asList("abc", "bcd", "cd", "甲乙")));
+        Trie<Object> all = new Trie<>(new HashSet<>(Arrays.asList("abc", "bcd", "cd", "甲乙", "b", "dab", "乙丙")));
+        TrieRegistry<Object> registry = new TrieRegistry<>(base, 1,
+                name -> TrieRegistry.withoutPayloads(new HashSet<>(Arrays.asList("b", "dab", "乙丙", "cd"))));
+        OverlayTrie overlay = registry.get("tenant");
+        CompiledTrie expected = all.compile();
+        String text = "abcdabcdab甲乙丙cdABCD";
+        Assertions.assertEquals(new HashSet<>(expected.findAll(text)), new HashSet<>(overlay.findAll(text)));
+        Assertions.assertEquals(new HashSet<>(expected.findAllIgnoreCase(text)), new HashSet<>(overlay.findAllIgnoreCase(text)));
+        int[] count = new int[1];
+        Assertions.assertFalse(overlay.scan(text, (begin, end, id) -> ++count[0] < 3));
+        Assertions.assertEquals(3, count[0]);
+    }
+
+    @Test
+    public void testLoadOutsideLock() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger slowLoads = new AtomicInteger();
+        Trie<Object> base = new Trie<>(new HashSet<>(Arrays.asList("he", "she")));
+        // A single shard, so every name shares the same lock.
+        TrieRegistry<Object> registry = new TrieRegistry<>(base, 4, name -> {
+            if (name.equals("slow")) {
+                slowLoads.incrementAndGet();
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+            } else if (name.equals("broken")) {
+                throw new IllegalStateException("broken");
+            }
+            return TrieRegistry.withoutPayloads(new HashSet<>(Arrays.asList(name)));
+        });
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<OverlayTrie> first = executor.submit(() -> registry.get("slow"));
+            Assertions.assertTrue(started.await(10, TimeUnit.SECONDS));
+            Future<OverlayTrie> second = executor.submit(() -> registry.get("slow"));
+            // The other names are loaded and found while the slow one is loading.
+            Assertions.assertEquals(1, registry.get("fast").findAll("fast").size());
+            Assertions.assertNotNull(registry.getIfPresent("fast"));
+            Assertions.assertNull(registry.getIfPresent("slow"));
+            Assertions.assertThrows(IllegalStateException.class, () -> registry.get("broken"));
+            release.countDown();
+            OverlayTrie slow = first.get(10, TimeUnit.SECONDS);
+            Assertions.assertSame(slow, second.get(10, TimeUnit.SECONDS));
+            Assertions.assertSame(slow, registry.get("slow"));
+            Assertions.assertEquals(1, slowLoads.get());
+            Assertions.assertEquals(2, registry.size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    public void log(Object object) {
+        logger.info(String.valueOf(object));
+    }
+}
@@ -3,9 +3,21 @@ package io.leego.trie;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 import java.util.logging.Logger;
 
 /**
@@ -164,6 +176,405 @@ public class TrieTests {
         equalsEmits(emits2, emits3);
     }
 
+    @Test
+    public void testRemoveKeywords() {
+        String text = "ushers";
+        Trie<?> trie = new Trie<>("he", "she", "his", "hers");
+        trie.removeKeywords("he");
+        Emits emits = trie.findAll(text, false);
+        log(emits);
+        equalsEmit(emits.get(0), 1, 4, "she");
+        equalsEmit(emits.get(1), 2, 6, "hers");
+        equalsSize(emits, 2);
+        trie.removeKeywords("hers", "she", "unknown");
+        equalsSize(trie.findAll(text, false), 0);
+        trie.addKeywords("he");
+        emits = trie.findAll(text, false);
+        equalsEmit(emits.get(0), 2, 4, "he");
+        equalsSize(emits, 1);
+    }
+
+    @Test
+    public void testIncremental() {
+        Random random = new Random(11);
+        Set<String> keywords = new HashSet<>();
+        Trie<?> trie = new Trie<>();
+        for (int round = 0; round < 200; round++) {
+            Set<String> added = new HashSet<>();
+            Set<String> removed = new HashSet<>();
+            for (int i = 0; i < 10; i++) {
+                added.add(randomString(random, "abcab", 1 + random.nextInt(6)));
+                removed.add(randomString(random, "abcab", 1 + random.nextInt(6)));
+            }
+            if (random.nextInt(3) > 0) {
+                trie.addKeywords(added);
+                keywords.addAll(added);
+            } else {
+                trie.removeKeywords(removed);
+                keywords.removeAll(removed);
+            }
+            String text = randomString(random, "abcd", 100);
+            equalsEmits(new Trie<>(keywords).findAll(text, false), trie.findAll(text, false));
+        }
+    }
+
+    @Test
+    public void testTransitions() {
+        // The states change between an inline edge, sorted chars and a dense table as the keywords change.
+        Random random = new Random(17);
+        String alphabet = "abcdefghijklmnopqrstuvwxyzABC雨风";
+        Set<String> keywords = new HashSet<>();
+        Trie<?> trie = new Trie<>();
+        for (int round = 0; round < 100; round++) {
+            Set<String> changed = new HashSet<>();
+            for (int i = 0; i < 30; i++) {
+                changed.add(randomString(random, alphabet, 1 + random.nextInt(3)));
+            }
+            if (random.nextInt(3) > 0) {
+                trie.addKeywords(changed);
+                keywords.addAll(changed);
+            } else {
+                trie.removeKeywords(changed);
+                keywords.removeAll(changed);
+            }
+            String text = randomString(random, alphabet + "xyz!", 200);
+            Set<String> found = new HashSet<>();
+            for (Emit emit : trie.findAll(text, false)) {
+                found.add(emit.getBegin() + ":" + emit.getKeyword());
+            }
+            Set<String> expected = new HashSet<>();
+            for (String keyword : keywords) {
+                for (int i = text.indexOf(keyword); i >= 0; i = text.indexOf(keyword, i + 1)) {
+                    expected.add(i + ":" + keyword);
+                }
+            }
+            Assertions.assertEquals(expected, found);
+            Assertions.assertEquals(trie.findAll(text.toUpperCase(), true), trie.compile().findAll(text.toUpperCase(), true));
+        }
+        TrieStructure structure = trie.structure();
+        log(structure);
+        Assertions.assertTrue(structure.getDenseNodeCount() > 1);
+    }
+
+    @Test
+    public void testParallel() {
+        Random random = new Random(13);
+        Set<String> keywords = new HashSet<>();
+        for (int i = 0; i < 20000; i++) {
+            keywords.add(randomString(random, "abcdefgh", 1 + random.nextInt(8)));
+        }
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            Trie<?> sequential = new Trie<>(keywords);
+            Trie<?> parallel = new Trie<>().addKeywords(keywords, pool);
+            for (int i = 0; i < 20; i++) {
+                String text = randomString(random, "abcdefghij", 500);
+                equalsEmits(sequential.findAll(text, false), parallel.findAll(text, false));
+            }
+            // The failure tree of a parallel build supports incremental updates.
+            Set<String> batch = new HashSet<>(Arrays.asList("abcdefghi", "hgfedcbah", "jab"));
+            sequential.addKeywords(batch).removeKeywords("abc", "def");
+            parallel.addKeywords(batch, pool).removeKeywords("abc", "def");
+            String text = randomString(random, "abcdefghij", 2000);
+            equalsEmits(sequential.findAll(text, false), parallel.findAll(text, false));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testNormalizer() {
+        String text = "ＴＵＲＮＩＮＧ once ÀGAİN Börkü ıstanbul \uD801\uDC00\uD801\uDC01";
+        CharNormalizer normalizer = CharNormalizer.caseFold()
+                .andThen(CharNormalizer.fullWidthToHalfWidth())
+                .andThen(CharNormalizer.stripAccents());
+        Trie<?> trie = new Trie<>().withNormalizer(normalizer)
+                .addKeywords("Turning", "ONCE", "again", "BORKU", "Istanbul", "\uD801\uDC28\uD801\uDC29");
+        Emits emits = trie.findAll(text);
+        log(emits);
+        Assertions.assertEquals(6, emits.size());
+        Assertions.assertEquals(new Emit(0, 7, "turning"), emits.get(0));
+        Assertions.assertEquals(new Emit(13, 18, "again"), emits.get(2));
+        Assertions.assertEquals(new Emit(34, 38, "\uD801\uDC28\uD801\uDC29"), emits.get(5));
+        Assertions.assertEquals(new Emit(5, 9, "once"), trie.findFirst("ＴＵＲＮ ＯＮＣＥ"));
+
+        CompiledTrie compiled = trie.compile();
+        Assertions.assertEquals(emits, compiled.findAll(text));
+        Assertions.assertEquals(emits, compiled.findAllIgnoreCase(text));
+        List<Emit> streamed = new ArrayList<>();
+        compiled.scan(new java.io.StringReader(text), (begin, end, id) ->
+                streamed.add(new Emit((int) begin, (int) end, compiled.getKeyword(id))));
+        Assertions.assertEquals(emits, streamed);
+
+        trie.removeKeywords("TURNING");
+        Assertions.assertEquals(5, trie.findAll(text).size());
+        Assertions.assertThrows(IllegalStateException.class, () -> trie.withNormalizer(null));
+    }
+
+    @Test
+    public void testSerialize() throws Exception {
+        Trie<?> trie = new Trie<>().withNormalizer(CharNormalizer.caseFold()).addKeywords("he", "she", "his");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(trie);
+        }
+        Trie<?> copy;
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            copy = (Trie<?>) in.readObject();
+        }
+        copy.addKeywords("hers").removeKeywords("his");
+        trie.addKeywords("hers").removeKeywords("his");
+        equalsEmits(trie.findAll("ushers his", false), copy.findAll("ushers his", false));
+        equalsEmits(trie.findAll("USHERS HIS", false), copy.findAll("USHERS HIS", false));
+        Assertions.assertEquals(3, copy.findAll("USHERS HIS", false).size());
+    }
+
+    @Test
+    public void testDeserializeBaseline() throws Exception {
+        // A Trie of "he", "she" and "hers" serialized by the version with the map of transitions,
+        // it must be rejected rather than read as an empty trie.
+        try (ObjectInputStream in = new ObjectInputStream(TrieTests.class.getResourceAsStream("/baseline-trie.ser"))) {
+            Assertions.assertThrows(InvalidClassException.class, in::readObject);
+        }
+    }
+
+    @Test
+    public void testPayload() {
+        Trie<Integer> trie = new Trie<Integer>()
+                .addKeyword("she", 1)
+                .addKeyword("he", 2)
+                .addKeyword("hers", 3);
+        Assertions.assertEquals(0, trie.getId("she"));
+        Assertions.assertEquals(1, trie.getId("he"));
+        Assertions.assertEquals(2, trie.getId("hers"));
+        Assertions.assertEquals(-1, trie.getId("his"));
+        Assertions.assertEquals(3, trie.size());
+
+        String text = "ushers";
+        Emits emits = trie.findAll(text);
+        log(emits);
+        Assertions.assertEquals(3, emits.size());
+        for (Emit emit : emits) {
+            Assertions.assertEquals(trie.getId(emit.getKeyword()), emit.getId());
+            Assertions.assertEquals(trie.getPayload(emit.getKeyword()), emit.<Integer>getPayload());
+        }
+        Assertions.assertEquals(Integer.valueOf(1), trie.findFirst(text).getPayload());
+
+        CompiledTrie compiled = trie.compile();
+        Emits compiledEmits = compiled.findAll(text);
+        Assertions.assertEquals(emits, compiledEmits);
+        for (int i = 0; i < emits.size(); i++) {
+            Assertions.assertEquals(emits.get(i).getId(), compiledEmits.get(i).getId());
+            Assertions.assertEquals(emits.get(i).<Integer>getPayload(), compiledEmits.get(i).getPayload());
+        }
+        BatchEmits batch = compiled.findAll(Arrays.asList(text, "he"));
+        Assertions.assertEquals(Integer.valueOf(2), batch.getPayload(batch.size() - 1));
+
+        // The id of a removed keyword is reused, and a payload can be replaced.
+        trie.removeKeywords("he").addKeyword("his", 4).addKeyword("she", 5);
+        Assertions.assertEquals(1, trie.getId("his"));
+        Assertions.assertEquals(Integer.valueOf(5), trie.getPayload("she"));
+        Assertions.assertNull(trie.getPayload("he"));
+        Assertions.assertEquals(3, trie.size());
+        compiled = trie.compile();
+        Assertions.assertEquals("his", compiled.getKeyword(1));
+        Assertions.assertEquals(Integer.valueOf(4), compiled.getPayload(1));
+        Assertions.assertEquals(Integer.valueOf(5), compiled.findFirst(text).getPayload());
+    }
+
+    @Test
+    public void testStats() throws Exception {
+        TrieStats stats = new TrieStats();
+        Trie<?> trie = new Trie<>().withListener(stats).addKeywords("he", "she", "his", "hers");
+        Assertions.assertEquals(1, stats.getBuilds());
+
+        Emits emits = trie.findAll("ushers");
+        Assertions.assertEquals(emits, new Trie<>("he", "she", "his", "hers").findAll("ushers"));
+        Assertions.assertNotNull(trie.findFirst("ahis"));
+        Assertions.assertEquals(2, stats.getSearches());
+        Assertions.assertEquals(10, stats.getCharsScanned());
+        Assertions.assertEquals(4, stats.getMatches());
+        // "ushers" falls back from "she" to "he", "hx" falls back from "h" to the root.
+        trie.findAll("hx");
+        Assertions.assertEquals(2, stats.getFailureHops());
+        trie.compile();
+        Assertions.assertEquals(1, stats.getCompiles());
+        log(stats);
+
+        TrieStructure structure = trie.structure();
+        log(structure);
+        Assertions.assertEquals(10, structure.getNodeCount());
+        Assertions.assertEquals(9, structure.getEdgeCount());
+        Assertions.assertEquals(4, structure.getKeywordCount());
+        Assertions.assertEquals(4, structure.getMaxDepth());
+        Assertions.assertTrue(structure.getEstimatedBytes() > 0);
+
+        javax.management.ObjectName name = stats.register("io.leego.trie:type=TrieStats,name=test");
+        try {
+            Object matches = java.lang.management.ManagementFactory.getPlatformMBeanServer().getAttribute(name, "Matches");
+            Assertions.assertEquals(4L, matches);
+        } finally {
+            TrieStats.unregister(name);
+        }
+
+        trie.withListener(null).findAll("ushers");
+        Assertions.assertEquals(3, stats.getSearches());
+        Assertions.assertEquals(2, stats.getFailureHops());
+    }
+
+    @Test
+    public void testSkipChars() {
+        Trie<?> trie = new Trie<>("bad", "word", "坏人");
+        CompiledTrie compiled = trie.compile();
+        SkipChars skipChars = SkipChars.defaults();
+        String text = "a b.a.d w-o-r-d, b\u200Ba\u200Bd, 坏 人, b....a d, B.A.D";
+        Emits emits = trie.findAll(text, skipChars);
+        log(emits);
+        Assertions.assertEquals(Arrays.asList(new Emit(2, 7, "bad"), new Emit(8, 15, "word"), new Emit(17, 22, "bad"), new Emit(24, 27, "坏人")), emits);
+        Assertions.assertEquals(emits, compiled.findAll(text, skipChars));
+        Assertions.assertEquals(5, trie.findAll(text, true, skipChars).size());
+        Assertions.assertEquals(trie.findAll(text, true, skipChars), compiled.findAll(text, true, skipChars));
+        // The obfuscated spans are masked as a whole.
+        Assertions.assertEquals("a ***** *******, *****, ***, b....a d, B.A.D", emits.replaceWith("*"));
+        // A longer run of skip chars breaks the match.
+        Assertions.assertEquals(1, trie.findAll("b...a d", skipChars).size());
+        Assertions.assertEquals(0, trie.findAll("b...a d", skipChars.withMaxGap(2)).size());
+        Assertions.assertEquals(0, compiled.findAll("b...a d", skipChars.withMaxGap(2)).size());
+        Assertions.assertEquals(trie.findAll("bad word"), trie.findAll("bad word", SkipChars.of("-")));
+
+        // The ring grows with the depth of the state.
+        StringBuilder keyword = new StringBuilder();
+        StringBuilder obfuscated = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            keyword.append((char) ('a' + i % 26));
+            obfuscated.append((char) ('a' + i % 26)).append('.');
+        }
+        Trie<?> longer = new Trie<>(keyword.toString());
+        Assertions.assertEquals(new Emit(0, 199, keyword.toString()), longer.findAll(obfuscated, skipChars).get(0));
+        Assertions.assertEquals(longer.findAll(obfuscated, skipChars), longer.compile().findAll(obfuscated, skipChars));
+    }
+
+    @Test
+    public void testFuzzy() {
+        Trie<?> trie = new Trie<>("hello", "world");
+        String text = "helo wrold hallo";
+        Emits emits = trie.findAllFuzzy(text, 1);
+        log(emits);
+        Assertions.assertEquals(Arrays.asList(new Emit(0, 4, "hello"), new Emit(11, 16, "hello")), emits);
+        Assertions.assertEquals(1, emits.get(0).getDistance());
+        Assertions.assertTrue(trie.findAllFuzzy(text, 2).contains(new Emit(5, 10, "world")));
+        Assertions.assertEquals(2, trie.findAllFuzzy("HELO HALLO", true, 1).size());
+        Assertions.assertTrue(trie.findAllFuzzy("HELO HALLO", 1).isEmpty());
+        // An exact match is reported once, with no distance.
+        Emits exact = trie.findAllFuzzy("say hello", 2);
+        Assertions.assertEquals(Arrays.asList(new Emit(4, 9, "hello")), exact);
+        Assertions.assertEquals(0, exact.get(0).getDistance());
+        Assertions.assertEquals(trie.findAll(text), trie.findAllFuzzy(text, 0));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> trie.findAllFuzzy(text, -1));
+
+        // The adjacent occurrences are all reported, without any edit the search is the exact one.
+        Assertions.assertEquals(new Trie<>("A").findAll("AA"), new Trie<>("A").findAllFuzzy("AA", 0));
+        Random random = new Random(43);
+        for (int round = 0; round < 50; round++) {
+            Set<String> keywords = new HashSet<>();
+            for (int i = 0; i < 10; i++) {
+                keywords.add(randomString(random, "ab", 1 + random.nextInt(3)));
+            }
+            Trie<?> t = new Trie<>(keywords);
+            String s = randomString(random, "abx", 80);
+            Set<Emit> expected = new HashSet<>(t.findAll(s));
+            Assertions.assertEquals(expected, new HashSet<>(t.findAllFuzzy(s, 0)));
+            Assertions.assertEquals(expected.size(), t.findAllFuzzy(s, 0).size());
+        }
+
+        // The traversal of the trie agrees with a search of each keyword.
+        for (int round = 0; round < 20; round++) {
+            Set<String> keywords = new HashSet<>();
+            for (int i = 0; i < 30; i++) {
+                keywords.add(randomString(random, "abcd", 1 + random.nextInt(6)));
+            }
+            Trie<?> t = new Trie<>(keywords);
+            String s = randomString(random, "abcdxy", 60);
+            for (int k = 1; k <= 2; k++) {
+                Set<String> expected = new HashSet<>();
+                for (String keyword : keywords) {
+                    expected.addAll(fuzzy(keyword, s, k));
+                }
+                Set<String> actual = new HashSet<>();
+                for (Emit emit : t.findAllFuzzy(s, k)) {
+                    actual.add(emit.toString());
+                }
+                Assertions.assertEquals(expected, actual);
+                Assertions.assertEquals(t.findAllFuzzy(s, k), t.findAllFuzzy(s.toUpperCase(), true, k));
+                for (Emit emit : t.findAllFuzzy(s, k)) {
+                    Assertions.assertEquals(emit.getDistance(), distance(emit.getKeyword(), s.substring(emit.getBegin(), emit.getEnd())));
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds a keyword with the full columns of distances.
+     */
+    private static List<String> fuzzy(String keyword, String text, int k) {
+        int n = text.length();
+        int[] distance = new int[n + 1];
+        int[] begin = new int[n + 1];
+        for (int j = 0; j <= n; j++) {
+            begin[j] = j;
+        }
+        for (int depth = 1; depth <= keyword.length(); depth++) {
+            int[] parent = distance.clone();
+            int[] parentBegin = begin.clone();
+            distance[0] = depth;
+            begin[0] = 0;
+            for (int j = 1; j <= n; j++) {
+                int d = parent[j - 1] + (text.charAt(j - 1) == keyword.charAt(depth - 1) ? 0 : 1);
+                int b = parentBegin[j - 1];
+                if (parent[j] + 1 < d) {
+                    d = parent[j] + 1;
+                    b = parentBegin[j];
+                }
+                if (distance[j - 1] + 1 < d) {
+                    d = distance[j - 1] + 1;
+                    b = begin[j - 1];
+                }
+                distance[j] = d;
+                begin[j] = b;
+            }
+        }
+        // The best end of each beginning index, the smallest distance and then the nearest end.
+        int[] best = new int[n + 1];
+        for (int j = 1; j <= n; j++) {
+            int d = distance[j];
+            if (d <= k && d < keyword.length() && begin[j] < j && (best[begin[j]] == 0 || d < distance[best[begin[j]]])) {
+                best[begin[j]] = j;
+            }
+        }
+        List<String> emits = new ArrayList<>();
+        for (int b = 0; b <= n; b++) {
+            if (best[b] != 0) {
+                emits.add(new Emit(b, best[b], keyword, -1, null, distance[best[b]]).toString());
+            }
+        }
+        return emits;
+    }
+
+    private static int distance(String a, String b) {
+        int[][] d = new int[a.length() + 1][b.length() + 1];
+        for (int i = 0; i <= a.length(); i++) {
+            for (int j = 0; j <= b.length(); j++) {
+                if (i == 0 || j == 0) {
+                    d[i][j] = i + j;
+                } else {
+                    d[i][j] = Math.min(d[i - 1][j - 1] + (a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1),
+                            Math.min(d[i - 1][j], d[i][j - 1]) + 1);
+                }
+            }
+        }
+        return d[a.length()][b.length()];
+    }
+
     @Test
     public void testEmoji() {
         // The length of emoji is 2.
@@ -177,6 +588,30 @@ public class TrieTests {
         equalsSize(emits, 1);
     }
 
+    @Test
+    @SuppressWarnings("deprecation")
+    public void testState() {
+        State root = new State(0);
+        State state = root.addState("he");
+        state.addKeywords(Arrays.asList("he", "he"));
+        Assertions.assertEquals("he", state.getKeyword());
+        Map<Character, State> success = root.getSuccess();
+        Assertions.assertEquals(1, success.size());
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> success.put('s', state));
+        // The copy does not reflect the transitions added later.
+        root.addState('s');
+        Assertions.assertEquals(1, success.size());
+        Assertions.assertEquals(2, root.getSuccess().size());
+    }
+
+    public String randomString(Random random, String alphabet, int length) {
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = alphabet.charAt(random.nextInt(alphabet.length()));
+        }
+        return new String(chars);
+    }
+
     public void equalsEmit(Emit emit, int begin, int end, String kw) {
         Assertions.assertEquals(emit, new Emit(begin, end, kw));
     }
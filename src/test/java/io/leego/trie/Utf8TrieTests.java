@@ -0,0 +1,114 @@
+package io.leego.trie;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.logging.Logger;
+
+/**
+ * @author Leego Yih
+ */
+public class Utf8TrieTests {
+    static final Logger logger = Logger.getLogger(Utf8TrieTests.class.getName());
+
+    @Test
+    public void testScan() {
+        String text = "ushers 昨夜雨疏风骤，Börkü 😀😁 ！";
+        Trie<?> trie = new Trie<>("he", "she", "hers", "雨疏", "风骤", "börkü", "Börkü", "😁", "😀😁", "！");
+        Utf8Trie utf8 = trie.compileUtf8();
+        CompiledTrie compiled = trie.compile();
+        Assertions.assertEquals(compiled.size(), utf8.size());
+        List<String> expected = new ArrayList<>();
+        compiled.scan(text, (begin, end, id) -> expected.add(bytes(text, begin) + ":" + bytes(text, end)
+                + "|" + begin + ":" + end + "=" + compiled.getKeyword(id)));
+        log(expected);
+
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        List<String> actual = new ArrayList<>();
+        Assertions.assertTrue(utf8.scan(bytes, (begin, end, charBegin, charEnd, id) -> actual.add(begin + ":" + end
+                + "|" + charBegin + ":" + charEnd + "=" + utf8.getKeyword(id))));
+        Assertions.assertEquals(expected, actual);
+
+        actual.clear();
+        ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length + 3);
+        direct.put(new byte[3]).put(bytes).flip().position(3);
+        Assertions.assertTrue(utf8.scan(direct, (begin, end, charBegin, charEnd, id) -> actual.add(begin + ":" + end
+                + "|" + charBegin + ":" + charEnd + "=" + utf8.getKeyword(id))));
+        Assertions.assertEquals(expected, actual);
+        Assertions.assertEquals(3, direct.position());
+
+        int[] count = {0};
+        Assertions.assertFalse(utf8.scan(ByteBuffer.wrap(bytes), (begin, end, id) -> ++count[0] < 2));
+        Assertions.assertEquals(2, count[0]);
+    }
+
+    @Test
+    public void testRandom() {
+        Random random = new Random(11);
+        String alphabet = "abcé甲乙😀";
+        for (int round = 0; round < 20; round++) {
+            Set<String> keywords = new HashSet<>();
+            for (int i = 0; i < 200; i++) {
+                keywords.add(randomString(random, alphabet, 1 + random.nextInt(5)));
+            }
+            Trie<?> trie = new Trie<>(keywords);
+            CompiledTrie compiled = trie.compile();
+            Utf8Trie utf8 = trie.compileUtf8();
+            for (int i = 0; i < 10; i++) {
+                String text = randomString(random, alphabet + "xyz", 200);
+                List<String> expected = new ArrayList<>();
+                compiled.scan(text, (begin, end, id) -> expected.add(begin + ":" + end + "=" + id));
+                List<String> actual = new ArrayList<>();
+                utf8.scan(text.getBytes(StandardCharsets.UTF_8), (begin, end, charBegin, charEnd, id) ->
+                        actual.add(charBegin + ":" + charEnd + "=" + id));
+                Assertions.assertEquals(expected, actual);
+            }
+        }
+    }
+
+    @Test
+    public void testEmpty() {
+        Utf8Trie utf8 = new Trie<>().compileUtf8();
+        Assertions.assertEquals(0, utf8.size());
+        Assertions.assertTrue(utf8.scan("text".getBytes(StandardCharsets.UTF_8), (begin, end, id) -> false));
+    }
+
+    @Test
+    public void testMalformed() {
+        // Both unpaired surrogates would be encoded as '?' by String.getBytes.
+        Trie<?> trie = new Trie<>().addKeywords("a\uD800", "a\uDC00");
+        Assertions.assertThrows(IllegalArgumentException.class, trie::compileUtf8);
+        Assertions.assertEquals(1, new Trie<>("a\uD800\uDC00").compileUtf8().size());
+    }
+
+    private static int bytes(String text, int chars) {
+        return text.substring(0, chars).getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    public String randomString(Random random, String alphabet, int length) {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            // Keeps the surrogate pairs together.
+            int j = random.nextInt(alphabet.length());
+            if (Character.isLowSurrogate(alphabet.charAt(j))) {
+                j--;
+            }
+            sb.append(alphabet.charAt(j));
+            if (Character.isHighSurrogate(alphabet.charAt(j))) {
+                sb.append(alphabet.charAt(j + 1));
+            }
+        }
+        return sb.toString();
+    }
+
+    public void log(Object object) {
+        logger.info(String.valueOf(object));
+    }
+}